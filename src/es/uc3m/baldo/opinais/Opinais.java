@@ -1,73 +1,261 @@
 package es.uc3m.baldo.opinais;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.Set;
 
 import es.uc3m.baldo.opinais.core.Classifier;
+import es.uc3m.baldo.opinais.core.CompiledClassifier;
 import es.uc3m.baldo.opinais.core.Individual;
+import es.uc3m.baldo.opinais.core.Model;
 import es.uc3m.baldo.opinais.core.OpinaisProperties;
 import es.uc3m.baldo.opinais.core.types.Type;
 import es.uc3m.baldo.opinais.experimenter.Experimenter;
+import es.uc3m.baldo.opinais.ir.items.Tweet;
+import es.uc3m.baldo.opinais.ir.preprocessors.Preprocessor;
+import es.uc3m.baldo.opinais.ir.readers.factories.TweetFactory;
+import es.uc3m.baldo.opinais.ir.vectorizers.TextVectorizer;
 
 /**
  * Opinais.
  * <p>Entry point to the the Opinais framework.</p>
  * <p>This class must not be modified to run the application,
  * rather, all properties must be set in the properties file.</p>
- * 
+ * <p>The application runs in one of the following modes:</p>
+ * <ul>
+ * <li><strong>train</strong>: extracts the features, evolves the detectors
+ * and reports their hit rate over the training and test sets. The model is
+ * written into the <em>modelFile</em>, if specified. This is the default
+ * mode.</li>
+ * <li><strong>evaluate</strong>: loads the model and reports its hit rate
+ * over the labeled individuals of the input file.</li>
+ * <li><strong>predict</strong>: loads the model and writes the inferred type
+ * of each of the unlabeled tweets of a file, streaming them in batches.</li>
+ * </ul>
+ * <p>Both <em>evaluate</em> and <em>predict</em> vectorize the items with the
+ * vocabulary of the model, so no features are extracted and no detectors are
+ * evolved.</p>
+ *
  * @author Alejandro Baldominos
  */
 public class Opinais {
 
+	/*
+	 * Number of tweets classified at once when predicting.
+	 */
+	private static final int PREDICTION_BATCH = 4096;
+
+	/*
+	 * Name written for the individuals which remain unclassified.
+	 */
+	private static final String UNCLASSIFIED = "Unclassified";
+
 	/**
 	 * <p>Runs the application.</p>
-	 * @param args the location of the properties file,
-	 * containing all the information required for the 
-	 * application to start.
+	 * @param args the mode, which may be omitted for training, the location
+	 * of the properties file, containing all the information required for
+	 * the application to start, and, when predicting, the input file with the
+	 * unlabeled tweets and the output file for the predictions.
 	 */
 	public static void main (String[] args) {
 		// Reads the input arguments.
-		String propertiesFile = null;
-		if (args.length < 1) {
-			System.err.println("Usage: Opinais <PropertiesFile>");
+		String mode = "train";
+		int first = 0;
+		if (args.length > 0 && (args[0].equals("train") || args[0].equals("evaluate") || args[0].equals("predict"))) {
+			mode = args[0];
+			first = 1;
+		}
+		int required = mode.equals("predict")? 3 : 1;
+		if (args.length - first != required) {
+			System.err.println("Usage: Opinais [train|evaluate] <PropertiesFile>");
+			System.err.println("       Opinais predict <PropertiesFile> <InputFile> <OutputFile>");
 			System.exit(-1);
-		} else {
-			propertiesFile = args[0];
 		}
-		
+
 		// Loads the configuration from the properties file.
 		System.out.println("Loading configuration...");
-		OpinaisProperties props = OpinaisProperties.readProperties(propertiesFile);
+		OpinaisProperties props = OpinaisProperties.readProperties(args[first]);
+
+		try {
+			if (mode.equals("train")) {
+				train(props);
+			} else if (mode.equals("evaluate")) {
+				evaluate(props);
+			} else {
+				predict(props, new File(args[first + 1]), new File(args[first + 2]));
+			}
+		} catch (IOException e) {
+			System.err.println("Error: " + e.getMessage());
+			System.exit(-1);
+		}
+
+		// Done :)
+		System.out.println("Done.");
+	}
 
+	/*
+	 * Trains a classifier and evaluates it over the training and test sets,
+	 * writing its model if required.
+	 */
+	private static void train (OpinaisProperties props) throws IOException {
 		// Generates the individuals from the input source.
-		Set<Individual> individuals = props.factory.makeIndividuals(new File(props.inputFile), props.reader, 
+		Set<Individual> individuals = props.factory.makeIndividuals(new File(props.inputFile), props.reader,
 									  								 props.preprocessors, props.featuresLength, props.individualsSize, props.isBalanced);
-		
+
 		// Runs the experimenter and generates the training and test sets.
 		System.out.println("Generating the training and test sets...");
 		Experimenter experimenter = new Experimenter(individuals, props.testPct);
 		Set<Individual> trainingSet = experimenter.getTrainingSet();
 		Set<Individual> testSet = experimenter.getTestSet();
-		
+
 		// Runs the algorithm.
 		System.out.println("Running the evolutionary algorithm...");
 		props.algorithm.setIndividuals(trainingSet);
 		Classifier classifier = props.algorithm.run();
-		
+
+		// Writes the model, if required.
+		if (props.modelFile != null) {
+			System.out.println("Writing the model...");
+			new Model(classifier, props.factory.getVocabulary()).write(new File(props.modelFile));
+		}
+
 		// Gets the results.
 		Map<Type, Map<Type, Integer>> confusionMatrixTrain = experimenter.getConfusionMatrix(classifier, trainingSet);
 		System.out.println("Confussion Matrix over Training Set:");
 		experimenter.printConfusionMatrix(confusionMatrixTrain);
 		System.out.println("Hit Rate over Training Set: " + experimenter.calculateHitRate(confusionMatrixTrain));
-		
+
 		Map<Type, Map<Type, Integer>> confusionMatrixTest = experimenter.getConfusionMatrix(classifier, testSet);
 		System.out.println("Confussion Matrix over Test Set:");
 		experimenter.printConfusionMatrix(confusionMatrixTest);
 		System.out.println("Hit Rate over Test Set: " + experimenter.calculateHitRate(confusionMatrixTest));
-		
-		// Done :)
-		System.out.println("Done.");
+	}
+
+	/*
+	 * Evaluates a trained model over all the individuals of the input file.
+	 */
+	private static void evaluate (OpinaisProperties props) throws IOException {
+		Model model = readModel(props);
+
+		// Generates the individuals with the features of the model.
+		Set<Individual> individuals = props.factory.makeIndividuals(new File(props.inputFile), props.reader,
+																	 props.preprocessors, model.getVocabulary());
+
+		// All the individuals are placed in the test set.
+		Experimenter experimenter = new Experimenter(individuals, 1.0);
+		Map<Type, Map<Type, Integer>> confusionMatrix = experimenter.getConfusionMatrix(model.getClassifier(),
+																					   experimenter.getTestSet());
+		System.out.println("Confussion Matrix:");
+		experimenter.printConfusionMatrix(confusionMatrix);
+		System.out.println("Hit Rate: " + experimenter.calculateHitRate(confusionMatrix));
+	}
+
+	/*
+	 * Writes the inferred type of each of the unlabeled tweets of a file,
+	 * as the tweet id and the type separated by a tab.
+	 *
+	 * Tweets are read, preprocessed, vectorized and classified in batches, so
+	 * the memory required does not depend on the size of the file.
+	 *
+	 * Lines which are not tweets have no row in the output, so they are
+	 * counted and reported, together with the first of them, on the
+	 * standard error.
+	 */
+	private static void predict (OpinaisProperties props, File inputFile, File outputFile) throws IOException {
+		Model model = readModel(props);
+		if (model.getVocabulary() == null) {
+			throw new IOException("The model has no vocabulary, so it cannot classify tweets");
+		}
+		CompiledClassifier classifier = model.getClassifier().compile();
+		TextVectorizer vectorizer = new TextVectorizer(model.getVocabulary());
+		TweetFactory factory = new TweetFactory();
+
+		System.out.println("Predicting the types of the tweets...");
+		BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(inputFile), StandardCharsets.UTF_8));
+		Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outputFile), StandardCharsets.UTF_8));
+		try {
+			long[] ids = new long[PREDICTION_BATCH];
+			Individual[] batch = new Individual[PREDICTION_BATCH];
+			int[] typeIds = new int[PREDICTION_BATCH];
+			long predictions = 0;
+			long lines = 0;
+			long skipped = 0;
+			long firstSkipped = 0;
+
+			int size = 0;
+			String line;
+			while ((line = in.readLine()) != null) {
+				lines++;
+				Tweet tweet = factory.makeUnlabeled(line);
+				if (tweet == null) {
+					if (skipped++ == 0) {
+						firstSkipped = lines;
+					}
+					continue;
+				}
+				for (Preprocessor<String> preprocessor : props.preprocessors) {
+					tweet.setText(preprocessor.process(tweet.getText()));
+				}
+				ids[size] = tweet.getId();
+				batch[size] = new Individual(null, vectorizer.vectorize(tweet));
+				size++;
+
+				// Classifies the batch once it is full.
+				if (size == PREDICTION_BATCH) {
+					writePredictions(out, classifier, ids, batch, typeIds);
+					predictions += size;
+					size = 0;
+				}
+			}
+
+			// Classifies the last, partial batch.
+			if (size > 0) {
+				Individual[] last = new Individual[size];
+				System.arraycopy(batch, 0, last, 0, size);
+				writePredictions(out, classifier, ids, last, typeIds);
+				predictions += size;
+			}
+			System.out.println("\t" + predictions + " tweets classified.");
+			if (skipped > 0) {
+				System.err.println("Warning: " + skipped + " of " + lines + " lines could not be parsed and were not"
+								   + " classified (the first one is line " + firstSkipped + ").");
+			}
+		} finally {
+			in.close();
+			out.close();
+		}
+	}
+
+	/*
+	 * Classifies a batch of tweets and writes their predictions.
+	 */
+	private static void writePredictions (Writer out, CompiledClassifier classifier, long[] ids,
+										  Individual[] batch, int[] typeIds) throws IOException {
+		classifier.classifyAll(batch, typeIds);
+		for (int i = 0; i < batch.length; i++) {
+			Type type = classifier.getType(typeIds[i]);
+			out.write(ids[i] + "\t" + (type == null? UNCLASSIFIED : type.name()) + "\n");
+		}
+	}
+
+	/*
+	 * Reads the model from the file specified in the properties.
+	 */
+	private static Model readModel (OpinaisProperties props) throws IOException {
+		if (props.modelFile == null) {
+			throw new IOException("The property modelFile must be specified");
+		}
+		System.out.println("Loading the model...");
+		return Model.read(new File(props.modelFile));
 	}
 
 }
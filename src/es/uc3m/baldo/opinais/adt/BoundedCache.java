@@ -0,0 +1,90 @@
+package es.uc3m.baldo.opinais.adt;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * BoundedCache.
+ * <p>A bounded cache is a map whose size is bounded.</p>
+ * <p>If the maximum number of entries is exceeded, then the least
+ * recently used entry is removed.</p>
+ * <p>All operations are synchronized, so the cache may be shared
+ * by several threads.</p>
+ *
+ * @param <K> the type of the keys.
+ * @param <V> the type of the cached values.
+ * 
+ * @author Alejandro Baldominos
+ */
+public class BoundedCache<K, V> {
+
+	/*
+	 *  Underlying data structure, sorted by access order.
+	 */
+	private Map<K, V> map;
+	
+	/*
+	 *  Maximum number of entries.
+	 */
+	private int bound;
+	
+	/**
+	 * <p>Builds a new bounded cache.</p>
+	 * @param bound the maximum number of entries this cache
+	 * can store.
+	 */
+	public BoundedCache (final int bound) {
+		this.bound = bound;
+		this.map = new LinkedHashMap<K, V>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry (Map.Entry<K, V> eldest) {
+				return size() > bound;
+			}
+		};
+	}
+	
+	/**
+	 * <p>Returns the value cached for a key.</p>
+	 * @param key the key.
+	 * @return the cached value, or null if the key is not cached.
+	 */
+	public synchronized V get (K key) {
+		return map.get(key);
+	}
+	
+	/**
+	 * <p>Caches a value for a key.</p>
+	 * <p>If the cache is full, the least recently used
+	 * entry is removed.</p>
+	 * @param key the key.
+	 * @param value the value.
+	 */
+	public synchronized void put (K key, V value) {
+		map.put(key, value);
+	}
+	
+	/**
+	 * <p>Removes all the entries in the cache.</p>
+	 */
+	public synchronized void clear () {
+		map.clear();
+	}
+	
+	/**
+	 * <p>Returns the number of entries in the cache.</p>
+	 * @return the number of entries.
+	 */
+	public synchronized int size () {
+		return map.size();
+	}
+	
+	/**
+	 * <p>Returns the maximum number of entries in the cache.</p>
+	 * @return the maximum number of entries.
+	 */
+	public int getBound () {
+		return bound;
+	}
+}
@@ -1,8 +1,8 @@
 package es.uc3m.baldo.opinais.adt;
 
+import java.util.AbstractList;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
 
@@ -13,6 +13,8 @@ import java.util.ListIterator;
  * in the list is removed.</p>
  * <p>This list may be used for some evolutionary algorithms to set an
  * stop condition based on stagnation.</p>
+ * <p>Items are stored in a ring buffer, so adding an item never
+ * allocates memory nor moves the remaining items.</p>
  *
  * @param <T> the type of the objects stored in this list.
  * 
@@ -28,7 +30,15 @@ public class BoundedList<T> implements List<T> {
 	private int bound;
 	
 	/*
-	 *  Underlying data structure.
+	 *  Underlying ring buffer, the position of the oldest item
+	 *  and the number of items.
+	 */
+	private Object[] items;
+	private int head;
+	private int size;
+	
+	/*
+	 *  Read-only view of the items, from the oldest to the newest.
 	 */
 	private List<T> list;
 	
@@ -39,7 +49,32 @@ public class BoundedList<T> implements List<T> {
 	 */
 	public BoundedList (int bound) {
 		this.bound = bound;
-		this.list = new LinkedList<T>();
+		this.items = new Object[Math.max(0, bound)];
+		this.list = new AbstractList<T>() {
+			@Override
+			public T get (int index) {
+				return item(index);
+			}
+
+			@Override
+			public int size () {
+				return size;
+			}
+		};
+	}
+	
+	/**
+	 * <p>Returns the item at a certain position, where 0 is
+	 * the oldest item.</p>
+	 * @param index the position of the item.
+	 * @return the item.
+	 */
+	@SuppressWarnings("unchecked")
+	private T item (int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+		return (T) items[(head + index) % items.length];
 	}
 	
 	/**
@@ -56,7 +91,11 @@ public class BoundedList<T> implements List<T> {
 	 */
 	@Override
 	public void clear () {
-		list.clear();
+		for (int i = 0; i < items.length; i++) {
+			items[i] = null;
+		}
+		head = 0;
+		size = 0;
 	}
 
 	/**
@@ -123,7 +162,7 @@ public class BoundedList<T> implements List<T> {
 	 */
 	@Override
 	public int size () {
-		return list.size();
+		return size;
 	}
 
 	/**
@@ -150,11 +189,20 @@ public class BoundedList<T> implements List<T> {
 	 */
 	@Override
 	public boolean add (T item) {
-		if (size() >= bound) {
-			list.remove(0);
+		if (items.length == 0) {
+			return false;
+		}
+		
+		if (size >= bound) {
+			// Overwrites the oldest item.
+			items[head] = item;
+			head = (head + 1) % items.length;
+		} else {
+			items[(head + size) % items.length] = item;
+			size++;
 		}
 		
-		return list.add(item);
+		return true;
 	}
 
 	/**
@@ -252,7 +300,7 @@ public class BoundedList<T> implements List<T> {
 	 * oldest element.</p>
 	 */
 	public T first () {
-		return list.get(0);
+		return item(0);
 	}
 	
 	/**
@@ -260,6 +308,6 @@ public class BoundedList<T> implements List<T> {
 	 * newest element.</p>
 	 */
 	public T last () {
-		return list.get(list.size() - 1);
+		return item(size - 1);
 	}
 }
@@ -0,0 +1,124 @@
+package es.uc3m.baldo.opinais.core;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import es.uc3m.baldo.opinais.core.types.Type;
+import es.uc3m.baldo.opinais.core.types.TypeBuilder;
+
+/**
+ * BinaryFormat.
+ * <p>Provides the encodings shared by the binary formats of the
+ * framework, i.e., models, checkpoints and the protocols between
+ * processes.</p>
+ * <p>Bit vectors are stored as their packed 64-bit words, and types
+ * by their names.</p>
+ *
+ * @author Alejandro Baldominos
+ */
+public class BinaryFormat {
+
+	/**
+	 * <p>Writes the packed words of a bit vector.</p>
+	 * @param out the output.
+	 * @param vector the bit vector.
+	 * @throws IOException if the words cannot be written.
+	 */
+	public static void writeWords (DataOutput out, BitVector vector) throws IOException {
+		for (long word : vector.getWords()) {
+			out.writeLong(word);
+		}
+	}
+
+	/**
+	 * <p>Reads the packed words of a bit vector.</p>
+	 * @param in the input.
+	 * @param length the length of the bit vector.
+	 * @return the bit vector.
+	 * @throws IOException if the words cannot be read, or the length
+	 * is negative.
+	 */
+	public static BitVector readWords (DataInput in, int length) throws IOException {
+		long[] words = new long[wordsFor(length)];
+		for (int i = 0; i < words.length; i++) {
+			words[i] = in.readLong();
+		}
+		return new BitVector(length, words);
+	}
+
+	/**
+	 * <p>Reads the packed words of a bit vector from a buffer, e.g., one
+	 * mapping a file into memory.</p>
+	 * @param in the buffer.
+	 * @param length the length of the bit vector.
+	 * @return the bit vector.
+	 * @throws IOException if the length is negative, or the buffer does
+	 * not hold all the words.
+	 */
+	public static BitVector readWords (ByteBuffer in, int length) throws IOException {
+		int count = wordsFor(length);
+		if (8L * count > in.remaining()) {
+			throw new IOException("Truncated bit vector of length " + length);
+		}
+		long[] words = new long[count];
+		in.asLongBuffer().get(words);
+		in.position(in.position() + 8 * words.length);
+		return new BitVector(length, words);
+	}
+
+	/**
+	 * <p>Returns the type with a certain name, which must be one of the
+	 * current types.</p>
+	 * @param name the name of the type.
+	 * @return the type.
+	 * @throws IOException if no type has that name.
+	 */
+	public static Type getType (String name) throws IOException {
+		Type type = findType(name);
+		if (type == null) {
+			throw new IOException("Unknown type: " + name + " (types are " + Arrays.toString(Type.values()) + ")");
+		}
+		return type;
+	}
+
+	/**
+	 * <p>Returns the type with a certain name, adding it unless it is
+	 * already known.</p>
+	 * @param name the name of the type.
+	 * @return the type.
+	 * @throws IOException if the type cannot be added.
+	 */
+	public static Type getOrAddType (String name) throws IOException {
+		if (findType(name) == null) {
+			TypeBuilder.addType(name);
+		}
+		return getType(name);
+	}
+
+	/*
+	 * Finds a type by its name, or returns null if it is not known.
+	 */
+	private static Type findType (String name) {
+		for (Type type : Type.values()) {
+			if (type.name().equals(name)) {
+				return type;
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Returns the number of words of a bit vector whose length is read
+	 * from an input, which must not be negative. The number is calculated
+	 * with longs so that it does not overflow for the longest lengths.
+	 */
+	private static int wordsFor (int length) throws IOException {
+		if (length < 0) {
+			throw new IOException("Invalid bit vector length: " + length);
+		}
+		return (int) ((length + 63L) / 64);
+	}
+}
@@ -0,0 +1,511 @@
+package es.uc3m.baldo.opinais.core;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import es.uc3m.baldo.opinais.core.detectors.Detector;
+import es.uc3m.baldo.opinais.core.detectors.Genome;
+import es.uc3m.baldo.opinais.core.types.Type;
+
+/**
+ * BitSlicedDataset.
+ * <p>Stores a set of individuals in a transposed (column-major)
+ * representation, so that a detector can be evaluated against
+ * 64 individuals at once.</p>
+ * <p>Individuals are grouped in blocks of 64. For each block and
+ * each feature position, a single 64-bit word stores the value of
+ * that feature for all the individuals in the block (one bit per
+ * individual). The words of a block are stored contiguously, so
+ * evaluating a detector is a streaming pass over dense memory.</p>
+ * <p>The number of matches of each individual in a block is
+ * accumulated in a bit-sliced counter, i.e., an array of words where
+ * the word <em>p</em> stores the <em>p</em>-th bit of the counter of
+ * every individual. Adding a column to the counter is performed with
+ * a ripple-carry adder built with bitwise operations.</p>
+ * <p>The result of evaluating a detector is a bitmap with one bit
+ * per individual, in the same order as {@link #getIndividuals()}.
+ * The bits beyond the number of individuals are always zero.</p>
+ * <p>The bit-sliced counters of a detector may also be kept, so that
+ * the counters of a slightly different detector (e.g., a mutated
+ * child) are derived from them by only adding and subtracting the
+ * columns of the positions which changed.</p>
+ *
+ * @author Alejandro Baldominos
+ */
+public class BitSlicedDataset {
+
+	/*
+	 * Number of individuals stored in each block.
+	 */
+	private static final int BLOCK_SIZE = 64;
+
+	/*
+	 * The individuals, in the order used by the bitmaps.
+	 */
+	private Individual[] individuals;
+
+	/*
+	 * The number of features of each individual.
+	 */
+	private int featuresLength;
+
+	/*
+	 * The number of blocks of individuals.
+	 */
+	private int blocks;
+
+	/*
+	 * The number of planes of the kept counters, which is enough
+	 * to count up to the number of features.
+	 */
+	private int planes;
+
+	/*
+	 * The transposed features. The word for block b and feature
+	 * position j is located at b * featuresLength + j.
+	 */
+	private long[] slices;
+
+	/*
+	 * A bitmap for each type, containing a 1 for those individuals
+	 * which belong to the type.
+	 */
+	private Map<Type, long[]> typeBitmaps;
+
+	/**
+	 * <p>Builds a new bit-sliced dataset from a collection of individuals.</p>
+	 * <p>All the individuals must have the same number of features.</p>
+	 * @param individuals the individuals to be stored.
+	 */
+	public BitSlicedDataset (Collection<Individual> individuals) {
+		this.individuals = individuals.toArray(new Individual[individuals.size()]);
+		this.featuresLength = this.individuals.length > 0? this.individuals[0].bits.length() : 0;
+		this.blocks = bitmapLength(this.individuals.length);
+		this.slices = new long[blocks * featuresLength];
+		this.planes = 32 - Integer.numberOfLeadingZeros(featuresLength);
+
+		// Initializes an empty bitmap for each type.
+		this.typeBitmaps = new HashMap<Type, long[]>();
+		for (Type type : Type.values()) {
+			typeBitmaps.put(type, new long[blocks]);
+		}
+
+		// Transposes the individuals.
+		for (int i = 0; i < this.individuals.length; i++) {
+			Individual individual = this.individuals[i];
+			int block = i / BLOCK_SIZE;
+			long lane = 1L << i;
+
+			for (int j = 0; j < featuresLength; j++) {
+				if (individual.bits.isSet(j)) {
+					slices[block * featuresLength + j] |= lane;
+				}
+			}
+
+			if (individual.type != null) {
+				typeBitmaps.get(individual.type)[block] |= lane;
+			}
+		}
+	}
+
+	/**
+	 * <p>Returns the number of words required by a bitmap
+	 * with one bit per individual.</p>
+	 * @param size the number of individuals.
+	 * @return the number of words of the bitmap.
+	 */
+	public static int bitmapLength (int size) {
+		return (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+	}
+
+	/**
+	 * <p>Returns the number of individuals.</p>
+	 * @return the number of individuals.
+	 */
+	public int size () {
+		return individuals.length;
+	}
+
+	/**
+	 * <p>Returns the number of blocks of 64 individuals, which is
+	 * also the number of words of each bitmap.</p>
+	 * @return the number of blocks.
+	 */
+	public int getBlocks () {
+		return blocks;
+	}
+
+	/**
+	 * <p>Returns the individuals, in the order used by the bitmaps.</p>
+	 * <p>The array is returned without copying for efficiency
+	 * purposes, so it must not be modified by the caller.</p>
+	 * @return the individuals.
+	 */
+	public Individual[] getIndividuals () {
+		return individuals;
+	}
+
+	/**
+	 * <p>Returns the bitmap of the individuals belonging to a type.</p>
+	 * <p>The array is returned without copying for efficiency
+	 * purposes, so it must not be modified by the caller.</p>
+	 * @param type the type.
+	 * @return a bitmap with a 1 for each individual of the type.
+	 */
+	public long[] getTypeBitmap (Type type) {
+		return typeBitmaps.get(type);
+	}
+
+	/**
+	 * <p>Finds the individuals matched by a detector, i.e., those whose
+	 * matching ratio is equal or greater than the detector threshold.</p>
+	 * @param detector the detector.
+	 * @return a bitmap with a 1 for each matched individual.
+	 */
+	public long[] match (Detector detector) {
+		return match(detector, 0, blocks);
+	}
+
+	/**
+	 * <p>Finds the individuals matched by a detector within a range
+	 * of blocks.</p>
+	 * <p>Different ranges may be evaluated concurrently, as this
+	 * method does not modify the dataset.</p>
+	 * @param detector the detector.
+	 * @param fromBlock the first block to be evaluated (inclusive).
+	 * @param toBlock the last block to be evaluated (exclusive).
+	 * @return a bitmap with a 1 for each matched individual, where
+	 * the first word corresponds to the first block of the range.
+	 */
+	public long[] match (Detector detector, int fromBlock, int toBlock) {
+		return match(detector, fromBlock, toBlock, false);
+	}
+
+	/**
+	 * <p>Finds the individuals whose matching ratio with a detector is valid,
+	 * i.e., strictly greater than the detector threshold.</p>
+	 * @param detector the detector.
+	 * @return a bitmap with a 1 for each individual with a valid matching ratio.
+	 */
+	public long[] validMatch (Detector detector) {
+		return validMatch(detector, 0, blocks);
+	}
+
+	/**
+	 * <p>Finds the individuals whose matching ratio with a detector is valid,
+	 * i.e., strictly greater than the detector threshold, within a range
+	 * of blocks.</p>
+	 * <p>These are the individuals which the detector may classify,
+	 * as done by {@link Classifier#classify(Individual)}.</p>
+	 * @param detector the detector.
+	 * @param fromBlock the first block to be evaluated (inclusive).
+	 * @param toBlock the last block to be evaluated (exclusive).
+	 * @return a bitmap with a 1 for each individual with a valid matching
+	 * ratio, where the first word corresponds to the first block of the range.
+	 */
+	public long[] validMatch (Detector detector, int fromBlock, int toBlock) {
+		return match(detector, fromBlock, toBlock, true);
+	}
+
+	/**
+	 * <p>Finds the individuals matched by a detector within a range
+	 * of blocks.</p>
+	 * @param detector the detector.
+	 * @param fromBlock the first block to be evaluated (inclusive).
+	 * @param toBlock the last block to be evaluated (exclusive).
+	 * @param valid whether the matching ratio must be strictly greater than
+	 * the threshold (true) or equal or greater (false).
+	 * @return a bitmap with a 1 for each matched individual, where
+	 * the first word corresponds to the first block of the range.
+	 */
+	private long[] match (Detector detector, int fromBlock, int toBlock, boolean valid) {
+		long[] matched = new long[toBlock - fromBlock];
+
+		// Retrieves the non-wildcard positions of the schema, and
+		// whether the pattern expects a 0 in each of them (in that case
+		// the column must be negated before counting).
+		int comparisons = 0;
+		int[] positions = new int[featuresLength];
+		long[] negations = new long[featuresLength];
+		for (int j = 0; j < featuresLength; j++) {
+			if (!detector.mask.isSet(j)) {
+				positions[comparisons] = j;
+				negations[comparisons] = detector.pattern.isSet(j)? 0L : -1L;
+				comparisons++;
+			}
+		}
+
+		// A detector without comparisons produces an undefined
+		// matching ratio, which never exceeds the threshold.
+		if (comparisons == 0) {
+			return matched;
+		}
+
+		// Calculates the minimum number of matches so that the
+		// matching ratio reaches the threshold.
+		int minimum = valid? minimumValidMatches(comparisons, detector.decodedThreshold)
+						   : minimumMatches(comparisons, detector.decodedThreshold);
+		if (minimum > comparisons) {
+			return matched;
+		}
+
+		// Number of bits required by the counters.
+		int width = 32 - Integer.numberOfLeadingZeros(comparisons);
+		long[] counter = new long[width];
+
+		for (int block = fromBlock; block < toBlock; block++) {
+			int offset = block * featuresLength;
+			for (int p = 0; p < width; p++) {
+				counter[p] = 0L;
+			}
+
+			// Accumulates the matches of each column into the counter.
+			for (int k = 0; k < comparisons; k++) {
+				add(counter, 0, width, slices[offset + positions[k]] ^ negations[k]);
+			}
+
+			matched[block - fromBlock] = greaterOrEqual(counter, 0, width, minimum);
+		}
+
+		// Clears the lanes beyond the number of individuals.
+		if (toBlock == blocks && toBlock > fromBlock) {
+			matched[toBlock - fromBlock - 1] &= BitVector.lastWordMask(individuals.length);
+		}
+
+		return matched;
+	}
+
+	/**
+	 * <p>Calculates the minimum number of matches so that the matching
+	 * ratio is equal or greater than a threshold.</p>
+	 * <p>The ratio is compared in floating point, exactly as
+	 * {@link Detector#match(Individual)} does, so that both methods
+	 * always agree.</p>
+	 * @param comparisons the number of comparisons.
+	 * @param threshold the threshold.
+	 * @return the minimum number of matches, or <em>comparisons + 1</em>
+	 * if the threshold cannot be reached.
+	 */
+	public static int minimumMatches (int comparisons, double threshold) {
+		// Without comparisons the ratio is undefined and never
+		// reaches the threshold.
+		if (comparisons == 0) {
+			return 1;
+		}
+		
+		int minimum = (int) Math.max(0, Math.min(comparisons + 1, Math.ceil(threshold * comparisons)));
+		while (minimum > 0 && (double) (minimum - 1) / comparisons >= threshold) {
+			minimum--;
+		}
+		while (minimum <= comparisons && (double) minimum / comparisons < threshold) {
+			minimum++;
+		}
+		return minimum;
+	}
+
+	/**
+	 * <p>Calculates the minimum number of matches so that the matching
+	 * ratio is strictly greater than a threshold.</p>
+	 * @param comparisons the number of comparisons.
+	 * @param threshold the threshold.
+	 * @return the minimum number of matches, or <em>comparisons + 1</em>
+	 * if the threshold cannot be exceeded.
+	 */
+	public static int minimumValidMatches (int comparisons, double threshold) {
+		int minimum = minimumMatches(comparisons, threshold);
+		while (minimum <= comparisons && !((double) minimum / comparisons > threshold)) {
+			minimum++;
+		}
+		return minimum;
+	}
+
+	/**
+	 * <p>Creates an array to keep the bit-sliced counters of a detector
+	 * for all the individuals.</p>
+	 * @return an array of counters, initialized to zero.
+	 */
+	public long[] newCounters () {
+		return new long[blocks * planes];
+	}
+
+	/**
+	 * <p>Counts the matches of a detector with each individual within
+	 * a range of blocks, keeping the bit-sliced counters.</p>
+	 * <p>Different ranges may be counted concurrently over the same
+	 * array of counters, as each range only writes its own blocks.</p>
+	 * @param detector the detector.
+	 * @param counters the array of counters, created with {@link #newCounters()}.
+	 * @param fromBlock the first block to be counted (inclusive).
+	 * @param toBlock the last block to be counted (exclusive).
+	 */
+	public void count (Detector detector, long[] counters, int fromBlock, int toBlock) {
+		// Retrieves the non-wildcard positions of the schema, and
+		// whether the pattern expects a 0 in each of them.
+		int comparisons = 0;
+		int[] positions = new int[featuresLength];
+		long[] negations = new long[featuresLength];
+		for (int j = 0; j < featuresLength; j++) {
+			if (!detector.mask.isSet(j)) {
+				positions[comparisons] = j;
+				negations[comparisons] = detector.pattern.isSet(j)? 0L : -1L;
+				comparisons++;
+			}
+		}
+		
+		for (int block = fromBlock; block < toBlock; block++) {
+			int offset = block * featuresLength;
+			int counter = block * planes;
+			for (int p = 0; p < planes; p++) {
+				counters[counter + p] = 0L;
+			}
+			
+			for (int k = 0; k < comparisons; k++) {
+				add(counters, counter, planes, slices[offset + positions[k]] ^ negations[k]);
+			}
+		}
+	}
+
+	/**
+	 * <p>Derives the counters of a detector from the counters of another
+	 * detector (its parent) within a range of blocks.</p>
+	 * <p>Only the positions where the schemas differ are visited: the
+	 * column of a position is subtracted if it was compared by the parent,
+	 * and added if it is compared by the child, negating it when the
+	 * pattern expects a 0.</p>
+	 * <p>Different ranges may be derived concurrently over the same
+	 * array of counters, as each range only writes its own blocks.</p>
+	 * @param parent the genome of the parent.
+	 * @param parentCounters the counters of the parent.
+	 * @param child the child detector.
+	 * @param counters the array of counters of the child, created with
+	 * {@link #newCounters()}.
+	 * @param fromBlock the first block to be derived (inclusive).
+	 * @param toBlock the last block to be derived (exclusive).
+	 */
+	public void update (Genome parent, long[] parentCounters, Detector child, long[] counters,
+						int fromBlock, int toBlock) {
+		System.arraycopy(parentCounters, fromBlock * planes, counters, fromBlock * planes, (toBlock - fromBlock) * planes);
+		
+		long[] parentPattern = parent.getPattern().getWords();
+		long[] parentMask = parent.getMask().getWords();
+		long[] childPattern = child.pattern.getWords();
+		long[] childMask = child.mask.getWords();
+		
+		for (int w = 0; w < parentMask.length; w++) {
+			// Visits each position which changed in this word.
+			long changes = (parentPattern[w] ^ childPattern[w]) | (parentMask[w] ^ childMask[w]);
+			while (changes != 0) {
+				int j = w * 64 + Long.numberOfTrailingZeros(changes);
+				changes &= changes - 1;
+				
+				boolean parentCompared = !parent.getMask().isSet(j);
+				boolean childCompared = !child.mask.isSet(j);
+				long parentNegation = parent.getPattern().isSet(j)? 0L : -1L;
+				long childNegation = child.pattern.isSet(j)? 0L : -1L;
+				
+				for (int block = fromBlock; block < toBlock; block++) {
+					long column = slices[block * featuresLength + j];
+					if (parentCompared) {
+						subtract(counters, block * planes, planes, column ^ parentNegation);
+					}
+					if (childCompared) {
+						add(counters, block * planes, planes, column ^ childNegation);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * <p>Finds the individuals whose counter reaches a minimum number
+	 * of matches within a range of blocks.</p>
+	 * @param counters the array of counters.
+	 * @param minimum the minimum number of matches.
+	 * @param fromBlock the first block (inclusive).
+	 * @param toBlock the last block (exclusive).
+	 * @return a bitmap with a 1 for each individual reaching the minimum, 
+	 * where the first word corresponds to the first block of the range.
+	 */
+	public long[] atLeast (long[] counters, int minimum, int fromBlock, int toBlock) {
+		long[] matched = new long[toBlock - fromBlock];
+		
+		// No counter can exceed the number of features.
+		if (minimum > featuresLength) {
+			return matched;
+		}
+		
+		for (int block = fromBlock; block < toBlock; block++) {
+			matched[block - fromBlock] = greaterOrEqual(counters, block * planes, planes, minimum);
+		}
+
+		// Clears the lanes beyond the number of individuals.
+		if (toBlock == blocks && toBlock > fromBlock) {
+			matched[toBlock - fromBlock - 1] &= BitVector.lastWordMask(individuals.length);
+		}
+		
+		return matched;
+	}
+
+	/**
+	 * <p>Adds a column to a bit-sliced counter, using a ripple-carry adder.</p>
+	 * @param counter the array containing the counter, least significant plane first.
+	 * @param offset the position of the counter in the array.
+	 * @param planes the number of planes of the counter.
+	 * @param column a word with a 1 in those lanes to be increased.
+	 */
+	private static void add (long[] counter, int offset, int planes, long column) {
+		long carry = column;
+		for (int p = offset; carry != 0 && p < offset + planes; p++) {
+			long sum = counter[p] ^ carry;
+			carry &= counter[p];
+			counter[p] = sum;
+		}
+	}
+
+	/**
+	 * <p>Subtracts a column from a bit-sliced counter, using a 
+	 * ripple-borrow subtractor.</p>
+	 * <p>The counters of the lanes to be decreased must be positive.</p>
+	 * @param counter the array containing the counter, least significant plane first.
+	 * @param offset the position of the counter in the array.
+	 * @param planes the number of planes of the counter.
+	 * @param column a word with a 1 in those lanes to be decreased.
+	 */
+	private static void subtract (long[] counter, int offset, int planes, long column) {
+		long borrow = column;
+		for (int p = offset; borrow != 0 && p < offset + planes; p++) {
+			long difference = counter[p] ^ borrow;
+			borrow &= ~counter[p];
+			counter[p] = difference;
+		}
+	}
+
+	/**
+	 * <p>Compares a bit-sliced counter with a constant.</p>
+	 * @param counter the array containing the counter, least significant plane first.
+	 * @param offset the position of the counter in the array.
+	 * @param planes the number of planes of the counter.
+	 * @param value the constant, which must be representable with
+	 * the number of planes of the counter.
+	 * @return a word with a 1 in those lanes whose counter is equal or
+	 * greater than the constant.
+	 */
+	private static long greaterOrEqual (long[] counter, int offset, int planes, int value) {
+		long greater = 0L;
+		long equal = -1L;
+
+		// Compares from the most significant bit.
+		for (int p = planes - 1; p >= 0; p--) {
+			long plane = counter[offset + p];
+			if ((value & (1 << p)) != 0) {
+				equal &= plane;
+			} else {
+				greater |= equal & plane;
+				equal &= ~plane;
+			}
+		}
+
+		return greater | equal;
+	}
+}
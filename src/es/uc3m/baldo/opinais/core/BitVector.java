@@ -0,0 +1,241 @@
+package es.uc3m.baldo.opinais.core;
+
+import java.util.Arrays;
+
+/**
+ * BitVector.
+ * <p>Represents a fixed-length sequence of bits, packed into
+ * an array of 64-bit words.</p>
+ * <p>Bit <em>i</em> is stored in the word <em>i / 64</em>, at
+ * the position <em>i % 64</em> (least significant bit first).
+ * The bits in the last word beyond the vector length are always
+ * kept as zeros, so that whole words can be operated and counted
+ * without further masking.</p>
+ *
+ * @author Alejandro Baldominos
+ */
+public class BitVector implements Cloneable {
+
+	/*
+	 * Number of bits stored in each word.
+	 */
+	private static final int WORD_SIZE = 64;
+
+	/*
+	 * Number of bits in the vector.
+	 */
+	private final int length;
+
+	/*
+	 * Packed representation of the bits.
+	 */
+	private final long[] words;
+
+	/**
+	 * <p>Builds a new bit vector with all its bits set to zero.</p>
+	 * @param length the number of bits in the vector.
+	 */
+	public BitVector (int length) {
+		this.length = length;
+		this.words = new long[wordsFor(length)];
+	}
+
+	/**
+	 * <p>Builds a new bit vector backed by an array of packed words.</p>
+	 * <p>The array is not copied, so it must not be modified by the
+	 * caller afterwards. The bits beyond the vector length are cleared.</p>
+	 * @param length the number of bits in the vector.
+	 * @param words the packed words, which must be exactly as many as
+	 * required to store the bits.
+	 */
+	public BitVector (int length, long[] words) {
+		if (words.length != wordsFor(length)) {
+			throw new IllegalArgumentException("Expected " + wordsFor(length) + " words, but got " + words.length);
+		}
+		this.length = length;
+		this.words = words;
+		if (words.length > 0) {
+			words[words.length - 1] &= lastWordMask(length);
+		}
+	}
+
+	/**
+	 * <p>Builds a new bit vector from an array of bits.</p>
+	 * @param bits the bits to be stored in the vector.
+	 */
+	public BitVector (Bit ... bits) {
+		this(bits.length);
+		for (int i = 0; i < bits.length; i++) {
+			set(i, bits[i]);
+		}
+	}
+
+	/**
+	 * <p>Returns the number of words required to store
+	 * a certain number of bits.</p>
+	 * @param length the number of bits.
+	 * @return the number of 64-bit words required.
+	 */
+	public static int wordsFor (int length) {
+		return (length + WORD_SIZE - 1) / WORD_SIZE;
+	}
+
+	/**
+	 * <p>Returns the number of bits in the vector.</p>
+	 * @return the number of bits in the vector.
+	 */
+	public int length () {
+		return length;
+	}
+
+	/**
+	 * <p>Returns the packed words backing this vector.</p>
+	 * <p>The array is returned without copying for efficiency
+	 * purposes, so it must not be modified by the caller.</p>
+	 * @return the packed words.
+	 */
+	public long[] getWords () {
+		return words;
+	}
+
+	/**
+	 * <p>Returns the bit located at a certain position.</p>
+	 * @param index the position of the bit.
+	 * @return the bit at the given position.
+	 */
+	public Bit get (int index) {
+		return isSet(index)? Bit.ONE : Bit.ZERO;
+	}
+
+	/**
+	 * <p>Checks whether the bit located at a certain position is a 1.</p>
+	 * @param index the position of the bit.
+	 * @return true if the bit is a 1, false otherwise.
+	 */
+	public boolean isSet (int index) {
+		return (words[index / WORD_SIZE] & (1L << index)) != 0;
+	}
+
+	/**
+	 * <p>Sets the bit located at a certain position.</p>
+	 * @param index the position of the bit.
+	 * @param bit the new value for the bit.
+	 */
+	public void set (int index, Bit bit) {
+		if (bit == Bit.ONE) {
+			words[index / WORD_SIZE] |= 1L << index;
+		} else {
+			words[index / WORD_SIZE] &= ~(1L << index);
+		}
+	}
+
+	/**
+	 * <p>Flips the bit located at a certain position.</p>
+	 * @param index the position of the bit.
+	 */
+	public void flip (int index) {
+		words[index / WORD_SIZE] ^= 1L << index;
+	}
+
+	/**
+	 * <p>Sets a whole word of packed bits.</p>
+	 * <p>The bits of the last word beyond the vector length are cleared.</p>
+	 * @param index the position of the word.
+	 * @param word the new value for the word.
+	 */
+	public void setWord (int index, long word) {
+		words[index] = index == words.length - 1? word & lastWordMask(length) : word;
+	}
+
+	/**
+	 * <p>Copies the bits of another vector of the same length into this
+	 * one, so that the vector is reused rather than allocating a new one.</p>
+	 * @param source the vector whose bits are copied.
+	 */
+	public void copy (BitVector source) {
+		if (source.length != length) {
+			throw new IllegalArgumentException("Expected " + length + " bits, but got " + source.length);
+		}
+		System.arraycopy(source.words, 0, words, 0, words.length);
+	}
+
+	/**
+	 * <p>Returns the number of bits set to 1.</p>
+	 * @return the number of bits set to 1.
+	 */
+	public int cardinality () {
+		int count = 0;
+		for (long word : words) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * <p>Returns a word with ones in all the valid positions
+	 * of the last word of a vector, and zeros in the positions
+	 * beyond its length.</p>
+	 * @param length the number of bits in the vector.
+	 * @return the mask for the last word of the vector.
+	 */
+	public static long lastWordMask (int length) {
+		int remainder = length % WORD_SIZE;
+		return remainder == 0? -1L : (1L << remainder) - 1;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean equals (Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		BitVector other = (BitVector) obj;
+		if (length != other.length)
+			return false;
+		if (!Arrays.equals(words, other.words))
+			return false;
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int hashCode () {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + length;
+		result = prime * result + Arrays.hashCode(words);
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString () {
+		StringBuilder builder = new StringBuilder("[");
+		for (int i = 0; i < length; i++) {
+			if (i > 0) {
+				builder.append(", ");
+			}
+			builder.append(isSet(i)? '1' : '0');
+		}
+		return builder.append(']').toString();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public BitVector clone () {
+		BitVector clone = new BitVector(length);
+		System.arraycopy(words, 0, clone.words, 0, words.length);
+		return clone;
+	}
+}
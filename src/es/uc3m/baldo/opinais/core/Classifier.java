@@ -31,6 +31,24 @@ public class Classifier {
 		this.detectors = detectors;
 	}
 	
+	/**
+	 * <p>Returns the best detectors for each type.</p>
+	 * @return the best detectors for each type.
+	 */
+	public Map<Type, Detector> getDetectors () {
+		return detectors;
+	}
+	
+	/**
+	 * <p>Compiles the classifier into an immutable form, which classifies
+	 * large numbers of individuals faster and may be shared by many
+	 * threads.</p>
+	 * @return the compiled classifier.
+	 */
+	public CompiledClassifier compile () {
+		return new CompiledClassifier(this);
+	}
+	
 	/**
 	 * <p>Infers the type of an individual given a classifier composed of
 	 * the best detector for each type.</p>
@@ -57,13 +75,17 @@ public class Classifier {
 		
 		// Iterates through all possible types.
 		for (Type type : detectors.keySet()) {
-			// Calculates the matching ratio with the best detector.			
+			// Non-valid matching ratios are ignored, so the exact
+			// ratio is only calculated if it exceeds the threshold.
 			Detector detector = detectors.get(type);
+			if (!detector.matchesAbove(individual)) {
+				continue;
+			}
 			double match = detector.match(individual);
 			
 			// This type would be the best type so far if its matching ratio
-			// is valid and exceeds the previous best valid matching ratio.
-			if (match > highestMatch && match > detector.decodedThreshold) {
+			// exceeds the previous best valid matching ratio.
+			if (match > highestMatch) {
 				highestMatch = match;
 				inferredType = type;
 			}
@@ -0,0 +1,280 @@
+package es.uc3m.baldo.opinais.core;
+
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import es.uc3m.baldo.opinais.core.detectors.Detector;
+import es.uc3m.baldo.opinais.core.types.Type;
+
+/**
+ * CompiledClassifier.
+ * <p>Represents an immutable form of a {@link Classifier}, optimized
+ * to classify large numbers of individuals.</p>
+ * <p>The detectors are flattened into arrays indexed by a dense type id,
+ * which is the position of the detector in the classifier. The patterns
+ * and the positions which are not wildcards are stored as consecutive
+ * packed words, and the minimum number of matches for a valid matching
+ * ratio is precomputed for each detector, so classifying an individual
+ * never calculates a floating-point ratio, nor allocates any object.</p>
+ * <p>The inferred types are the same as those of
+ * {@link Classifier#classify(Individual)}. Since a compiled classifier is
+ * never modified, it may be used by many threads at once.</p>
+ *
+ * @author Alejandro Baldominos
+ */
+public class CompiledClassifier {
+
+	/**
+	 * <p>The type id of the unclassified individuals.</p>
+	 */
+	public static final int UNCLASSIFIED = -1;
+
+	/*
+	 * Number of individuals classified by the same thread
+	 * when classifying in parallel.
+	 */
+	private static final int BLOCK_SIZE = 1024;
+
+	/*
+	 * The type of each detector, indexed by its type id.
+	 */
+	private final Type[] types;
+
+	/*
+	 * The packed words of the pattern and the positions which are not
+	 * wildcards of all the detectors, and the position of the first
+	 * word of each detector.
+	 */
+	private final long[] patterns;
+	private final long[] care;
+	private final int[] offsets;
+
+	/*
+	 * For each word of each detector, the number of positions which
+	 * are not wildcards in the following words.
+	 */
+	private final int[] remaining;
+
+	/*
+	 * The number of comparisons of each detector, and the minimum number
+	 * of matches so that its matching ratio is valid.
+	 */
+	private final int[] comparisons;
+	private final int[] minimumValidMatches;
+
+	/**
+	 * <p>Compiles a classifier.</p>
+	 * <p>The thresholds of the detectors are read when compiling, so later
+	 * changes of the detectors do not affect the compiled classifier.</p>
+	 * @param classifier the classifier.
+	 */
+	public CompiledClassifier (Classifier classifier) {
+		Map<Type, Detector> detectors = classifier.getDetectors();
+		int size = detectors.size();
+		this.types = new Type[size];
+		this.offsets = new int[size + 1];
+		this.comparisons = new int[size];
+		this.minimumValidMatches = new int[size];
+
+		int d = 0;
+		for (Detector detector : detectors.values()) {
+			offsets[d+1] = offsets[d] + detector.mask.getWords().length;
+			d++;
+		}
+		this.patterns = new long[offsets[size]];
+		this.care = new long[offsets[size]];
+		this.remaining = new int[offsets[size]];
+
+		d = 0;
+		for (Map.Entry<Type, Detector> entry : detectors.entrySet()) {
+			Detector detector = entry.getValue();
+			types[d] = entry.getKey();
+
+			// Copies the pattern and the positions which are not wildcards,
+			// clearing the bits beyond the schema length.
+			long[] patternWords = detector.pattern.getWords();
+			long[] maskWords = detector.mask.getWords();
+			int words = maskWords.length;
+			for (int i = 0; i < words; i++) {
+				patterns[offsets[d] + i] = patternWords[i];
+				care[offsets[d] + i] = ~maskWords[i];
+			}
+			if (words > 0) {
+				care[offsets[d] + words - 1] &= BitVector.lastWordMask(detector.mask.length());
+			}
+			for (int i = words - 1; i >= 0; i--) {
+				comparisons[d] += Long.bitCount(care[offsets[d] + i]);
+				if (i > 0) {
+					remaining[offsets[d] + i - 1] = comparisons[d];
+				}
+			}
+
+			minimumValidMatches[d] = BitSlicedDataset.minimumValidMatches(comparisons[d],
+																		  detector.decodedThreshold);
+			d++;
+		}
+	}
+
+	/**
+	 * <p>Returns the number of types of the classifier.</p>
+	 * @return the number of types, so type ids range from 0 to this
+	 * number minus one.
+	 */
+	public int getTypesCount () {
+		return types.length;
+	}
+
+	/**
+	 * <p>Returns the type identified by a type id.</p>
+	 * @param typeId the type id.
+	 * @return the type, or null for {@link #UNCLASSIFIED}.
+	 */
+	public Type getType (int typeId) {
+		return typeId == UNCLASSIFIED? null : types[typeId];
+	}
+
+	/**
+	 * <p>Infers the type of an individual.</p>
+	 * @param individual the individual whose type is to be inferred.
+	 * @return the inferred type of the individual, or null if it
+	 * remains unclassified.
+	 * @see Classifier#classify(Individual)
+	 */
+	public Type classify (Individual individual) {
+		return getType(classifyId(individual.bits.getWords()));
+	}
+
+	/**
+	 * <p>Infers the type ids of a set of individuals, in the calling
+	 * thread.</p>
+	 * <p>Individuals are visited once each, and the flattened detectors,
+	 * which are a few words per type, stay in the processor cache while
+	 * all of them are classified. No object is allocated.</p>
+	 * @param individuals the individuals whose types are to be inferred.
+	 * @param typeIds the array where the type id of each individual is
+	 * stored, or {@link #UNCLASSIFIED}. It must be at least as long as
+	 * the individuals.
+	 */
+	public void classifyAll (Individual[] individuals, int[] typeIds) {
+		classifyRange(individuals, typeIds, 0, individuals.length);
+	}
+
+	/**
+	 * <p>Infers the type ids of a set of individuals, splitting them
+	 * in blocks which are classified in parallel by a pool of threads.</p>
+	 * <p>Only the tasks splitting the blocks are allocated, and the type
+	 * ids are the same as if they were inferred serially.</p>
+	 * @param individuals the individuals whose types are to be inferred.
+	 * @param typeIds the array where the type id of each individual is
+	 * stored, or {@link #UNCLASSIFIED}. It must be at least as long as
+	 * the individuals.
+	 * @param pool the pool of threads.
+	 */
+	public void classifyAll (Individual[] individuals, int[] typeIds, ForkJoinPool pool) {
+		if (individuals.length <= BLOCK_SIZE) {
+			classifyAll(individuals, typeIds);
+		} else {
+			pool.invoke(new ClassificationTask(individuals, typeIds, 0, individuals.length));
+		}
+	}
+
+	/*
+	 * Infers the type ids of a range of individuals.
+	 */
+	private void classifyRange (Individual[] individuals, int[] typeIds, int from, int to) {
+		for (int i = from; i < to; i++) {
+			typeIds[i] = classifyId(individuals[i].bits.getWords());
+		}
+	}
+
+	/*
+	 * Infers the type id of an individual, given its packed words.
+	 *
+	 * As in the classifier, the inferred type is that of the detector with
+	 * the highest valid matching ratio, and the first one in case of ties.
+	 * Ratios are compared exactly as fractions of matches by comparisons,
+	 * since two different ratios are never equal in floating point with
+	 * the number of comparisons of a detector.
+	 */
+	private int classifyId (long[] bits) {
+		int inferred = UNCLASSIFIED;
+		long highestMatches = 0;
+		long highestComparisons = 1;
+
+		for (int d = 0; d < types.length; d++) {
+			int minimum = minimumValidMatches[d];
+			if (minimum > comparisons[d]) {
+				continue;
+			}
+
+			// Counts the matches, stopping as soon as the remaining positions
+			// cannot produce a valid matching ratio.
+			int matches = 0;
+			int offset = offsets[d];
+			int words = offsets[d+1] - offset;
+			for (int i = 0; i < words; i++) {
+				matches += Long.bitCount(~(patterns[offset + i] ^ bits[i]) & care[offset + i]);
+				if (matches + remaining[offset + i] < minimum) {
+					break;
+				}
+			}
+			if (matches < minimum) {
+				continue;
+			}
+
+			// This type would be the best type so far if its matching ratio
+			// exceeds the previous best valid matching ratio.
+			if (matches * highestComparisons > highestMatches * comparisons[d]) {
+				highestMatches = matches;
+				highestComparisons = comparisons[d];
+				inferred = d;
+			}
+		}
+
+		return inferred;
+	}
+
+	/**
+	 * ClassificationTask.
+	 * <p>Classifies a range of individuals, splitting it recursively
+	 * in blocks so that they are spread over a pool of threads.</p>
+	 */
+	private class ClassificationTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		/*
+		 * The individuals, and the array of type ids.
+		 */
+		private Individual[] individuals;
+		private int[] typeIds;
+
+		/*
+		 * The range of individuals to be classified.
+		 */
+		private int from;
+		private int to;
+
+		/*
+		 * Builds a new task for a range of individuals.
+		 */
+		private ClassificationTask (Individual[] individuals, int[] typeIds, int from, int to) {
+			this.individuals = individuals;
+			this.typeIds = typeIds;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute () {
+			if (to - from <= BLOCK_SIZE) {
+				classifyRange(individuals, typeIds, from, to);
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new ClassificationTask(individuals, typeIds, from, middle),
+						  new ClassificationTask(individuals, typeIds, middle, to));
+			}
+		}
+	}
+}
@@ -1,7 +1,5 @@
 package es.uc3m.baldo.opinais.core;
 
-import java.util.Arrays;
-
 import es.uc3m.baldo.opinais.core.types.Type;
 
 /**
@@ -9,7 +7,8 @@ import es.uc3m.baldo.opinais.core.types.Type;
  * <p>Represents an individual in the Artificial Immune
  * System.</p>
  * <p>This individual is represented by a feature
- * vector, which is indeed a bit array.</p>
+ * vector, which is indeed a bit array packed into
+ * 64-bit words.</p>
  * 
  * @author Alejandro Baldominos
  */
@@ -21,9 +20,9 @@ public class Individual {
 	public Type type;
 	
 	/*
-	 *  Features vector.
+	 *  Features vector, packed into 64-bit words.
 	 */
-	public Bit[] bits;
+	public BitVector bits;
 	
 	/**
 	 * <p>Builds a new Individual instance.</p>
@@ -32,7 +31,7 @@ public class Individual {
 	 */
 	public Individual (Type type, Bit ... bits) {
 		this.type = type;
-		this.bits = bits;
+		this.bits = new BitVector(bits);
 	}
 	
 	/**
@@ -45,13 +44,24 @@ public class Individual {
 	 */
 	public Individual (Type type, int ... bits) {
 		this.type = type;
-		this.bits = new Bit[bits.length];
+		this.bits = new BitVector(bits.length);
 		for (int i = 0; i < bits.length; i++) {
 			// TODO Values different from 0 are treated as 1s.
-			this.bits[i] = bits[i] == 0? Bit.ZERO : Bit.ONE;
+			this.bits.set(i, bits[i] == 0? Bit.ZERO : Bit.ONE);
 		}
 	}
 
+	/**
+	 * <p>Builds a new Individual instance from a bit vector,
+	 * which is not copied.</p>
+	 * @param type the individual type.
+	 * @param bits the bit vector representing the individual.
+	 */
+	public Individual (Type type, BitVector bits) {
+		this.type = type;
+		this.bits = bits;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -67,7 +77,7 @@ public class Individual {
 	public int hashCode () {
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + Arrays.hashCode(bits);
+		result = prime * result + ((bits == null) ? 0 : bits.hashCode());
 		result = prime * result + ((type == null) ? 0 : type.hashCode());
 		return result;
 	}
@@ -77,7 +87,7 @@ public class Individual {
 	 */
 	@Override
 	public String toString () {
-		return "Individual [type=" + type + ", bits=" + Arrays.toString(bits)
+		return "Individual [type=" + type + ", bits=" + bits
 				+ "]";
 	}
 }
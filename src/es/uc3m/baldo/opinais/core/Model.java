@@ -0,0 +1,240 @@
+package es.uc3m.baldo.opinais.core;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import es.uc3m.baldo.opinais.core.detectors.Detector;
+import es.uc3m.baldo.opinais.core.types.Type;
+
+/**
+ * Model.
+ * <p>Represents a trained model, i.e., a classifier together with the
+ * vocabulary used to vectorize the items into individuals, so that new
+ * items can be classified without training again.</p>
+ * <p>Models are stored in a compact, versioned binary format: the names of
+ * the types, the threshold, pattern and mask of each detector as packed
+ * 64-bit words, and the features in the order of the bits of the
+ * individuals. Models are loaded by mapping the file into memory, so a
+ * scoring process starts in a few milliseconds.</p>
+ *
+ * @author Alejandro Baldominos
+ */
+public class Model {
+
+	/*
+	 * Header of the binary format ("OPMD") and its version.
+	 */
+	private static final int MAGIC = 0x4F504D44;
+	private static final int VERSION = 1;
+
+	/*
+	 * The classifier, and the features in the order of the bits of the
+	 * individuals, or null if the features are not named.
+	 */
+	private Classifier classifier;
+	private String[] vocabulary;
+
+	/**
+	 * <p>Builds a new model.</p>
+	 * @param classifier the classifier.
+	 * @param vocabulary the features in the order of the bits of the individuals,
+	 * as extracted when vectorizing them, or null if the features are not named,
+	 * e.g., for voting records.
+	 */
+	public Model (Classifier classifier, String[] vocabulary) {
+		this.classifier = classifier;
+		this.vocabulary = vocabulary;
+	}
+
+	/**
+	 * <p>Returns the classifier.</p>
+	 * @return the classifier.
+	 */
+	public Classifier getClassifier () {
+		return classifier;
+	}
+
+	/**
+	 * <p>Returns the features in the order of the bits of the individuals.</p>
+	 * @return the features, or null if they are not named.
+	 */
+	public String[] getVocabulary () {
+		return vocabulary;
+	}
+
+	/**
+	 * <p>Writes the model into a file.</p>
+	 * <p>The model is first written into a temporary file, which then
+	 * is synchronized with the storage device and then replaces the target
+	 * file atomically, so processes loading the model never read a partial
+	 * file, not even after a crash.</p>
+	 * @param file the file.
+	 * @throws IOException if the model cannot be written.
+	 */
+	public void write (File file) throws IOException {
+		File temporary = new File(file.getPath() + ".tmp");
+		boolean written = false;
+		try {
+			FileOutputStream stream = new FileOutputStream(temporary);
+			try {
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+				write(out);
+				out.flush();
+				stream.getFD().sync();
+			} finally {
+				stream.close();
+			}
+
+			Files.move(temporary.toPath(), file.toPath(),
+					   StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			written = true;
+		} finally {
+			// A partial temporary file is never left behind.
+			if (!written) {
+				temporary.delete();
+			}
+		}
+	}
+
+	/*
+	 * Writes the model into a stream.
+	 */
+	private void write (DataOutputStream out) throws IOException {
+		Map<Type, Detector> detectors = classifier.getDetectors();
+		Detector first = detectors.isEmpty()? null : detectors.values().iterator().next();
+
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(detectors.size());
+		out.writeInt(first == null? 0 : first.threshold.length());
+		out.writeInt(first == null? 0 : first.pattern.length());
+
+		// Writes the detectors, in the order in which they are tried.
+		for (Map.Entry<Type, Detector> entry : detectors.entrySet()) {
+			Detector detector = entry.getValue();
+			writeString(out, entry.getKey().name());
+			out.writeDouble(detector.decodedThreshold);
+			out.writeDouble(detector.getFitness());
+			BinaryFormat.writeWords(out, detector.threshold);
+			BinaryFormat.writeWords(out, detector.pattern);
+			BinaryFormat.writeWords(out, detector.mask);
+		}
+
+		// Writes the vocabulary.
+		out.writeInt(vocabulary == null? -1 : vocabulary.length);
+		if (vocabulary != null) {
+			for (String feature : vocabulary) {
+				writeString(out, feature);
+			}
+		}
+	}
+
+	/**
+	 * <p>Reads a model from a file, mapping it into memory.</p>
+	 * <p>The types of the model which are not known yet are added.</p>
+	 * @param file the file.
+	 * @return the model.
+	 * @throws IOException if the file cannot be read, or it is not
+	 * a valid model.
+	 */
+	public static Model read (File file) throws IOException {
+		FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Truncated model file: " + file, e);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/*
+	 * Reads a model from a mapped buffer.
+	 */
+	private static Model read (MappedByteBuffer in) throws IOException {
+		if (in.remaining() < 8 || in.getInt() != MAGIC) {
+			throw new IOException("Not a model file");
+		}
+		int version = in.getInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported model version: " + version);
+		}
+
+		// Each detector takes at least the length of its type and two doubles.
+		int size = in.getInt();
+		int thresholdLength = in.getInt();
+		int featuresLength = in.getInt();
+		if (size < 0 || size > in.remaining() / 20) {
+			throw new IOException("Invalid number of detectors: " + size);
+		}
+		if (thresholdLength < 0 || featuresLength < 0) {
+			throw new IOException("Invalid lengths: " + thresholdLength + ", " + featuresLength);
+		}
+
+		// Reads the detectors, keeping the order in which they are tried.
+		Map<Type, Detector> detectors = new LinkedHashMap<Type, Detector>();
+		for (int d = 0; d < size; d++) {
+			Type type = BinaryFormat.getOrAddType(readString(in));
+			double decodedThreshold = in.getDouble();
+			double fitness = in.getDouble();
+			BitVector threshold = BinaryFormat.readWords(in, thresholdLength);
+			BitVector pattern = BinaryFormat.readWords(in, featuresLength);
+			BitVector mask = BinaryFormat.readWords(in, featuresLength);
+			Detector detector = new Detector(type, threshold, pattern, mask);
+			if (detector.decodedThreshold != decodedThreshold) {
+				detector.setDecodedThreshold(decodedThreshold);
+			}
+			detector.setFitness(fitness);
+			detectors.put(type, detector);
+		}
+
+		// Reads the vocabulary, where each feature takes at least its length.
+		int features = in.getInt();
+		if (features < -1 || features > in.remaining() / 4) {
+			throw new IOException("Invalid number of features: " + features);
+		}
+		String[] vocabulary = null;
+		if (features >= 0) {
+			vocabulary = new String[features];
+			for (int i = 0; i < features; i++) {
+				vocabulary[i] = readString(in);
+			}
+		}
+
+		return new Model(new Classifier(detectors), vocabulary);
+	}
+
+	/*
+	 * Writes a string as its length and its UTF-8 bytes.
+	 */
+	private static void writeString (DataOutputStream out, String string) throws IOException {
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/*
+	 * Reads a string written as its length and its UTF-8 bytes.
+	 */
+	private static String readString (MappedByteBuffer in) throws IOException {
+		int length = in.getInt();
+		if (length < 0 || length > in.remaining()) {
+			throw new IOException("Invalid string length: " + length);
+		}
+		byte[] bytes = new byte[length];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -7,6 +7,8 @@ import java.util.List;
 import java.util.Properties;
 
 import es.uc3m.baldo.opinais.core.algorithms.Algorithm;
+import es.uc3m.baldo.opinais.core.detectors.Detector;
+import es.uc3m.baldo.opinais.core.detectors.MatchKernelFactory;
 import es.uc3m.baldo.opinais.core.types.TypeBuilder;
 import es.uc3m.baldo.opinais.ir.IndividualsFactory;
 import es.uc3m.baldo.opinais.ir.items.Item;
@@ -79,6 +81,12 @@ public class OpinaisProperties {
 	 * properties file.</p>
 	 */
 	public Algorithm algorithm;
+	
+	/**
+	 * <p>The file where the trained model is written, or null
+	 * if the model is not kept.</p>
+	 */
+	public String modelFile;
 
 	/**
 	 * <p>Initializes the properties class.</p>
@@ -129,6 +137,12 @@ public class OpinaisProperties {
 			// Gets properties related to the experimenter.
 			opinaisProps.testPct = Double.parseDouble(properties.getProperty("testPct"));
 			
+			// Gets the kernel used to match detectors and individuals.
+			// If not specified, the default kernel is kept.
+			if (properties.containsKey("matchKernel")) {
+				Detector.setMatchKernel(MatchKernelFactory.makeKernel(properties.getProperty("matchKernel").trim()));
+			}
+			
 			// Get properties related to the AIS algorithm.	
 			// Reflection is used to generate the algorithm calling the constructor with the parameters
 			// specified in the properties.
@@ -163,6 +177,84 @@ public class OpinaisProperties {
 			Class<Algorithm> algorithmClass = (Class<Algorithm>) Class.forName("es.uc3m.baldo.opinais.core.algorithms." + properties.getProperty("algorithm"));
 			Constructor<Algorithm> constructor = algorithmClass.getDeclaredConstructor(algorithmTypes);
 			opinaisProps.algorithm = constructor.newInstance(algorithmParameters);
+			
+			// Sets the number of threads used to evaluate the detectors.
+			// If not specified, detectors are evaluated serially.
+			if (properties.containsKey("parallelism")) {
+				opinaisProps.algorithm.setParallelism(Integer.parseInt(properties.getProperty("parallelism").trim()));
+			}
+			
+			// Sets the number of individuals per chunk when evaluating a single
+			// detector in parallel. If not specified, the default size is kept.
+			if (properties.containsKey("chunkSize")) {
+				opinaisProps.algorithm.setChunkSize(Integer.parseInt(properties.getProperty("chunkSize").trim()));
+			}
+			
+			// Sets the maximum number of fitness values cached by genome.
+			// If not specified, fitness values are not cached.
+			if (properties.containsKey("fitnessCacheSize")) {
+				opinaisProps.algorithm.setFitnessCacheSize(Integer.parseInt(properties.getProperty("fitnessCacheSize").trim()));
+			}
+			
+			// Sets the maximum number of detectors whose match counters are kept.
+			// If not specified, children are always evaluated from scratch.
+			if (properties.containsKey("countersCacheSize")) {
+				opinaisProps.algorithm.setCountersCacheSize(Integer.parseInt(properties.getProperty("countersCacheSize").trim()));
+			}
+			
+			// Sets whether the parents are selected at once using stochastic
+			// universal sampling. If not specified, they are selected independently.
+			if (properties.containsKey("universalSampling")) {
+				opinaisProps.algorithm.setUniversalSampling(Boolean.parseBoolean(properties.getProperty("universalSampling").trim()));
+			}
+			
+			// Sets the selector used to choose the parents, and the size of the 
+			// tournaments. If not specified, the roulette selector is used.
+			if (properties.containsKey("selector")) {
+				opinaisProps.algorithm.setSelector(properties.getProperty("selector").trim());
+			}
+			if (properties.containsKey("tournamentSize")) {
+				opinaisProps.algorithm.setTournamentSize(Integer.parseInt(properties.getProperty("tournamentSize").trim()));
+			}
+			
+			// Sets the master seed of the random generators. If not specified,
+			// the seed is derived from the current time.
+			if (properties.containsKey("seed")) {
+				opinaisProps.algorithm.setSeed(Long.parseLong(properties.getProperty("seed").trim()));
+			}
+			
+			// Sets the stop condition based on stagnation. If not specified,
+			// the algorithm only stops after the maximum number of generations.
+			if (properties.containsKey("stagnationWindow")) {
+				opinaisProps.algorithm.setStagnationWindow(Integer.parseInt(properties.getProperty("stagnationWindow").trim()));
+			}
+			if (properties.containsKey("stagnationEpsilon")) {
+				opinaisProps.algorithm.setStagnationEpsilon(Double.parseDouble(properties.getProperty("stagnationEpsilon").trim()));
+			}
+			
+			// Sets the workers holding the shards of the individuals. If not
+			// specified, the individuals are evaluated locally.
+			if (properties.containsKey("shards")) {
+				opinaisProps.algorithm.setShards(properties.getProperty("shards").trim());
+			}
+			
+			// Sets the checkpoints of the run, and whether the run is resumed from
+			// the last one. If not specified, no checkpoints are written.
+			if (properties.containsKey("checkpointFile")) {
+				opinaisProps.algorithm.setCheckpointFile(properties.getProperty("checkpointFile").trim());
+			}
+			if (properties.containsKey("checkpointInterval")) {
+				opinaisProps.algorithm.setCheckpointInterval(Integer.parseInt(properties.getProperty("checkpointInterval").trim()));
+			}
+			if (properties.containsKey("resume")) {
+				opinaisProps.algorithm.setResume(Boolean.parseBoolean(properties.getProperty("resume").trim()));
+			}
+			
+			// Sets the file where the trained model is written. If not specified,
+			// the model is discarded when the application finishes.
+			if (properties.containsKey("modelFile")) {
+				opinaisProps.modelFile = properties.getProperty("modelFile").trim();
+			}
 		
 		// TODO Some error handling would be OK.
 		} catch (Exception e) {
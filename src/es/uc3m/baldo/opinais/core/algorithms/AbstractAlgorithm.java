@@ -1,13 +1,24 @@
 package es.uc3m.baldo.opinais.core.algorithms;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
+import es.uc3m.baldo.opinais.adt.BoundedCache;
+import es.uc3m.baldo.opinais.adt.BoundedList;
+import es.uc3m.baldo.opinais.core.BitSlicedDataset;
 import es.uc3m.baldo.opinais.core.Classifier;
 import es.uc3m.baldo.opinais.core.Individual;
 import es.uc3m.baldo.opinais.core.detectors.Detector;
 import es.uc3m.baldo.opinais.core.detectors.DetectorFactory;
+import es.uc3m.baldo.opinais.core.detectors.Genome;
+import es.uc3m.baldo.opinais.core.random.SplitMixRandom;
+import es.uc3m.baldo.opinais.core.types.Type;
 
 /**
  * <p>Provides an abstract implementation of an algorithm.</p>
@@ -25,6 +36,13 @@ public abstract class AbstractAlgorithm implements Algorithm {
 	 */
 	protected Set<Individual> individuals;
 	
+	/**
+	 *  <p>The individuals, stored in a transposed representation
+	 *  which allows evaluating a detector against 64 individuals
+	 *  at once.</p>
+	 */
+	protected BitSlicedDataset dataset;
+	
 	/**
 	 *  <p>List of detectors.</p>
 	 *  <p>A list is chosen rather than a set because
@@ -60,6 +78,114 @@ public abstract class AbstractAlgorithm implements Algorithm {
 	 */
 	protected int maxGenerations;
 	
+	/**
+	 * <p>The pool of threads used to evaluate the detectors
+	 * in parallel, or null if they are evaluated serially.</p>
+	 */
+	protected ForkJoinPool pool;
+	
+	/**
+	 * <p>The number of individuals in each of the chunks in which
+	 * the individuals are split to evaluate a single detector in
+	 * parallel. Smaller sets of individuals are not split.</p>
+	 */
+	protected int chunkSize = 65536;
+	
+	/**
+	 * <p>The fitness values of the last evaluated genomes, or null if
+	 * fitness values are not cached.</p>
+	 * <p>The cached values are only valid for the current set of
+	 * individuals, so the cache is cleared whenever they change.</p>
+	 */
+	protected BoundedCache<Genome, Double> fitnessCache;
+	
+	/**
+	 * <p>The per-individual match counters of the last elite genomes,
+	 * or null if they are not kept.</p>
+	 * <p>The counters are only valid for the current set of individuals,
+	 * so the cache is cleared whenever they change.</p>
+	 */
+	protected BoundedCache<Genome, long[]> countersCache;
+	
+	/**
+	 * <p>Whether all the parents of a generation are selected at
+	 * once using stochastic universal sampling.</p>
+	 */
+	protected boolean universalSampling;
+	
+	/**
+	 * <p>The name of the selector used to choose the parents,
+	 * either <em>RouletteSelector</em> or <em>TournamentSelector</em>.</p>
+	 */
+	protected String selector = "RouletteSelector";
+	
+	/**
+	 * <p>The number of detectors competing in each tournament,
+	 * when the tournament selector is used.</p>
+	 */
+	protected int tournamentSize = 2;
+	
+	/**
+	 * <p>The master random generator, from which the generators
+	 * of each task are split.</p>
+	 * <p>It must only be used by the thread running the algorithm.</p>
+	 */
+	protected SplitMixRandom random = new SplitMixRandom();
+	
+	/**
+	 * <p>The number of generations over which the improvement of
+	 * the best fitness is measured to detect stagnation, where 0 
+	 * means that the algorithm never stops due to stagnation.</p>
+	 */
+	protected int stagnationWindow;
+	
+	/**
+	 * <p>The minimum improvement of the best fitness over the
+	 * stagnation window for the algorithm to continue.</p>
+	 */
+	protected double stagnationEpsilon;
+	
+	/**
+	 * <p>The best fitness of each type over the last generations,
+	 * used to detect stagnation.</p>
+	 */
+	protected Map<Type, BoundedList<Double>> bestFitness = new HashMap<Type, BoundedList<Double>>();
+	
+	/**
+	 * <p>The file where checkpoints of the run are written, and from
+	 * which the run is resumed, or null if checkpoints are not used.</p>
+	 */
+	protected String checkpointFile;
+	
+	/**
+	 * <p>The number of generations between two consecutive checkpoints,
+	 * where 0 means that no checkpoints are written.</p>
+	 */
+	protected int checkpointInterval;
+	
+	/**
+	 * <p>Whether the run is resumed from the checkpoint file, if it exists.</p>
+	 */
+	protected boolean resume;
+	
+	/*
+	 * The writer of the checkpoints, created with the first checkpoint.
+	 */
+	private CheckpointWriter checkpointWriter;
+	
+	/**
+	 * <p>The addresses (<em>host:port</em>) of the workers holding the
+	 * shards of the individuals, or null if the individuals are evaluated
+	 * locally.</p>
+	 */
+	protected String[] shardAddresses;
+	
+	/**
+	 * <p>The shards of the individuals, over which the fitness is calculated,
+	 * or null if the individuals are evaluated locally.</p>
+	 */
+	protected List<Shard> shards;
+	
 	/**
 	 * <p>Initializes some fields common to most algorithms.</p>
 	 * @param speciesSize the size of the detectors population.
@@ -82,17 +208,241 @@ public abstract class AbstractAlgorithm implements Algorithm {
 	/**
 	 * {@inheritDoc}
 	 * <p>Automatically retrieves the number of features of the
-	 * individuals.</p>
+	 * individuals, and builds their bit-sliced representation.</p>
+	 * <p>If the individuals are split in shards, they are uploaded to the
+	 * workers, and neither they nor their bit-sliced representation are
+	 * kept, so the memory required by the master does not depend on the
+	 * number of individuals.</p>
 	 */
 	@Override
 	public void setIndividuals (Set<Individual> individuals) {
-		this.individuals = individuals;
+		if (this.fitnessCache != null) {
+			this.fitnessCache.clear();
+		}
+		if (this.countersCache != null) {
+			this.countersCache.clear();
+		}
 		
 		// Extracts the number of features from the individual.
 		for (Individual individual : individuals) {
-			this.featuresLength = individual.bits.length;
+			this.featuresLength = individual.bits.length();
 			break;
 		}
+		
+		if (this.shardAddresses != null) {
+			connectShards(individuals);
+			this.individuals = null;
+			this.dataset = null;
+		} else {
+			this.individuals = individuals;
+			this.dataset = new BitSlicedDataset(individuals);
+		}
+	}
+	
+	/**
+	 * <p>Checks whether the algorithm requires the individuals locally, e.g.,
+	 * because part of its fitness is not calculated over the shards. Such
+	 * algorithms ignore the shards, since splitting the individuals would
+	 * neither spread all the evaluation nor reduce the memory required.</p>
+	 * @return true if the individuals must be kept locally.
+	 */
+	protected boolean requiresLocalIndividuals () {
+		return false;
+	}
+	
+	/**
+	 * <p>Splits the individuals in as many shards as workers, and
+	 * uploads each shard to its worker.</p>
+	 * <p>Individuals are dealt to the shards in turns, so that shards
+	 * have the same size.</p>
+	 * @param individuals the individuals.
+	 */
+	protected void connectShards (Set<Individual> individuals) {
+		closeShards();
+		
+		List<List<Individual>> partitions = new ArrayList<List<Individual>>(this.shardAddresses.length);
+		for (int i = 0; i < this.shardAddresses.length; i++) {
+			partitions.add(new ArrayList<Individual>());
+		}
+		int next = 0;
+		for (Individual individual : individuals) {
+			partitions.get(next).add(individual);
+			next = (next + 1) % partitions.size();
+		}
+		
+		this.shards = new ArrayList<Shard>(this.shardAddresses.length);
+		try {
+			for (int i = 0; i < this.shardAddresses.length; i++) {
+				String[] address = this.shardAddresses[i].trim().split(":");
+				this.shards.add(new RemoteShard(address[0], Integer.parseInt(address[1]), 
+												partitions.get(i), this.featuresLength));
+			}
+		} catch (IOException e) {
+			closeShards();
+			throw new IllegalStateException("Cannot connect to the shard workers", e);
+		}
+	}
+	
+	/**
+	 * <p>Disconnects from the workers holding the shards, if any.</p>
+	 */
+	protected void closeShards () {
+		if (this.shards != null) {
+			for (Shard shard : this.shards) {
+				shard.close();
+			}
+			this.shards = null;
+		}
+	}
+	
+	/**
+	 * <p>Calculates the confusion counts of a batch of detectors over all
+	 * the individuals, adding their counts over each shard.</p>
+	 * <p>The batch is submitted to all the shards before collecting the
+	 * counts of any of them, so shards count in parallel.</p>
+	 * @param detectors the detectors.
+	 * @return the confusion counts of each detector.
+	 */
+	protected Confusion[] countShards (Detector[] detectors) {
+		Confusion[] counts = new Confusion[detectors.length];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = new Confusion();
+		}
+		
+		try {
+			for (Shard shard : this.shards) {
+				shard.submit(detectors);
+			}
+			for (Shard shard : this.shards) {
+				Confusion[] partial = shard.collect();
+				for (int i = 0; i < counts.length; i++) {
+					counts[i].add(partial[i]);
+				}
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot evaluate the detectors over the shards", e);
+		}
+		
+		return counts;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setParallelism (int parallelism) {
+		this.pool = parallelism > 1? new ForkJoinPool(parallelism) : null;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setChunkSize (int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setFitnessCacheSize (int fitnessCacheSize) {
+		this.fitnessCache = fitnessCacheSize > 0? new BoundedCache<Genome, Double>(fitnessCacheSize) : null;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setCountersCacheSize (int countersCacheSize) {
+		this.countersCache = countersCacheSize > 0? new BoundedCache<Genome, long[]>(countersCacheSize) : null;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setUniversalSampling (boolean universalSampling) {
+		this.universalSampling = universalSampling;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setSelector (String selector) {
+		if (!selector.equals("RouletteSelector") && !selector.equals("TournamentSelector")) {
+			throw new IllegalArgumentException("Unknown selector: " + selector);
+		}
+		this.selector = selector;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setTournamentSize (int tournamentSize) {
+		this.tournamentSize = tournamentSize;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setSeed (long seed) {
+		this.random = new SplitMixRandom(seed);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setStagnationWindow (int stagnationWindow) {
+		this.stagnationWindow = stagnationWindow;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setStagnationEpsilon (double stagnationEpsilon) {
+		this.stagnationEpsilon = stagnationEpsilon;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setShards (String shards) {
+		this.shardAddresses = shards == null || shards.trim().isEmpty()? null : shards.split(",");
+		if (this.shardAddresses != null && requiresLocalIndividuals()) {
+			System.err.println(getClass().getSimpleName() + " requires the individuals locally, so the shards are ignored.");
+			this.shardAddresses = null;
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setCheckpointFile (String checkpointFile) {
+		this.checkpointFile = checkpointFile;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setCheckpointInterval (int checkpointInterval) {
+		this.checkpointInterval = checkpointInterval;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setResume (boolean resume) {
+		this.resume = resume;
 	}
 	
 	/**
@@ -109,27 +459,155 @@ public abstract class AbstractAlgorithm implements Algorithm {
 	/**
 	 * <p>Decides whether the algorithm must stop.</p>
 	 * <p>By default, the stop condition for an algorithm
-	 * is that the maximum number of generations is achieved.</p>
+	 * is that the maximum number of generations is achieved.
+	 * If a stagnation window is set, the algorithm also stops
+	 * when the best fitness of every type has improved less than
+	 * the stagnation epsilon over the window.</p>
 	 * <p>Child classes may re-implement the stop condition
 	 * or add new ones.</p>
 	 * @param generation the current generation.
 	 * @return true if the algorithm must stop because the 
-	 * maximum number of generations has been already achieved,
-	 * false otherwise.
+	 * maximum number of generations has been already achieved
+	 * or it has stagnated, false otherwise.
 	 */
 	protected boolean stop (int generation) {
 		if (this.maxGenerations > 0 && generation > this.maxGenerations) {
 			return true;
 		}
-		return false;
+		return stagnated();
+	}
+	
+	/**
+	 * <p>Records the best fitness of a type in the current generation,
+	 * so that stagnation can be detected.</p>
+	 * @param type the type.
+	 * @param fitness the fitness of the best detector of the type.
+	 */
+	protected void recordBestFitness (Type type, double fitness) {
+		if (this.stagnationWindow <= 0) {
+			return;
+		}
+		
+		BoundedList<Double> window = this.bestFitness.get(type);
+		if (window == null) {
+			// The window also stores the fitness preceding it, which
+			// is used as the reference to measure the improvement.
+			window = new BoundedList<Double>(this.stagnationWindow + 1);
+			this.bestFitness.put(type, window);
+		}
+		window.add(fitness);
+	}
+	
+	/**
+	 * <p>Checks whether the best fitness of every type has improved
+	 * less than the stagnation epsilon over the stagnation window.</p>
+	 * @return true if the algorithm has stagnated, false otherwise
+	 * (or if the window is not complete yet).
+	 */
+	protected boolean stagnated () {
+		if (this.stagnationWindow <= 0 || this.bestFitness.size() < Type.values().length) {
+			return false;
+		}
+		
+		for (BoundedList<Double> window : this.bestFitness.values()) {
+			if (window.size() <= this.stagnationWindow) {
+				return false;
+			}
+			
+			// Measures the improvement with respect to the oldest value.
+			double highest = Double.NEGATIVE_INFINITY;
+			for (Double fitness : window) {
+				highest = Math.max(highest, fitness);
+			}
+			if (highest - window.first() >= this.stagnationEpsilon) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * <p>Takes a checkpoint of the run, if the generation is a multiple
+	 * of the checkpoint interval, and writes it in the background.</p>
+	 * <p>It must be called once the populations have been evaluated and
+	 * ranked, and before the next generation is bred.</p>
+	 * @param generation the current generation.
+	 * @param populations the populations of each type.
+	 */
+	protected void checkpoint (int generation, Map<Type, Population> populations) {
+		if (this.checkpointFile == null || this.checkpointInterval <= 0
+				|| generation % this.checkpointInterval != 0) {
+			return;
+		}
+		
+		if (this.checkpointWriter == null) {
+			this.checkpointWriter = new CheckpointWriter(new File(this.checkpointFile));
+		}
+		this.checkpointWriter.write(new Checkpoint(generation, this.random.getState(), 
+												   populations, this.bestFitness));
+	}
+	
+	/**
+	 * <p>Waits until the pending checkpoints are written.</p>
+	 */
+	protected void closeCheckpoints () {
+		if (this.checkpointWriter != null) {
+			this.checkpointWriter.close();
+			this.checkpointWriter = null;
+		}
+	}
+	
+	/**
+	 * <p>Restores the state of the run from the checkpoint file, if the
+	 * run must be resumed and the file exists.</p>
+	 * <p>The master random generator and the best fitness values are
+	 * restored, and the checkpoint is returned so that the algorithm
+	 * restores its populations and breeds the next generation.</p>
+	 * <p>A checkpoint which cannot be read, or which was taken from a run
+	 * with other types, species size or number of features, stops the run
+	 * rather than starting it from scratch, which would replace the
+	 * checkpoint with the next one.</p>
+	 * @return the checkpoint, or null if the run must start from scratch.
+	 * @throws IllegalStateException if the checkpoint cannot be resumed.
+	 */
+	protected Checkpoint restore () {
+		if (!this.resume || this.checkpointFile == null || !new File(this.checkpointFile).exists()) {
+			return null;
+		}
+		
+		Checkpoint checkpoint;
+		try {
+			checkpoint = Checkpoint.read(new File(this.checkpointFile));
+			checkpoint.validate(this.speciesSize, this.featuresLength);
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot resume from the checkpoint file " + this.checkpointFile 
+											+ ": " + e.getMessage(), e);
+		}
+		
+		this.random = new SplitMixRandom(checkpoint.getRandomState());
+		this.bestFitness.clear();
+		if (this.stagnationWindow > 0) {
+			for (Map.Entry<Type, double[]> entry : checkpoint.getBestFitness().entrySet()) {
+				for (double fitness : entry.getValue()) {
+					recordBestFitness(entry.getKey(), fitness);
+				}
+			}
+		}
+		
+		System.out.println("\tResuming from generation " + checkpoint.getGeneration() + ".");
+		return checkpoint;
 	}
 	
 	/**
 	 * <p>Initializes a random population of detectors.</p>
 	 */
 	protected void initializePopulation () {
+		// Stagnation is measured from the first generation.
+		this.bestFitness.clear();
+		
 		for (int i = 0; i < this.speciesSize; i++) {
-			this.detectors.add(DetectorFactory.makeDetector(this.featuresLength, this.typeBias, this.generalityBias));
+			this.detectors.add(DetectorFactory.makeDetector(this.featuresLength, this.typeBias, this.generalityBias, this.random));
 		}
 	}
 }
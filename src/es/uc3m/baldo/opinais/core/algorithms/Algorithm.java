@@ -26,4 +26,115 @@ public interface Algorithm {
 	 * @param individuals set containing the individuals.
 	 */
 	public void setIndividuals (Set<Individual> individuals);
+	
+	/**
+	 * <p>Sets the number of threads used to evaluate the detectors.</p>
+	 * @param parallelism the number of threads, where 1 means that
+	 * detectors are evaluated serially.
+	 */
+	public void setParallelism (int parallelism);
+	
+	/**
+	 * <p>Sets the number of individuals in each of the chunks in which
+	 * the individuals are split to evaluate a single detector in parallel.</p>
+	 * @param chunkSize the number of individuals per chunk.
+	 */
+	public void setChunkSize (int chunkSize);
+	
+	/**
+	 * <p>Sets the maximum number of fitness values cached by genome,
+	 * so that detectors with the same genome are evaluated only once.</p>
+	 * @param fitnessCacheSize the maximum number of cached fitness values,
+	 * where 0 means that fitness values are not cached.
+	 */
+	public void setFitnessCacheSize (int fitnessCacheSize);
+	
+	/**
+	 * <p>Sets the maximum number of detectors whose per-individual match
+	 * counters are kept, so that their mutated children are evaluated
+	 * incrementally.</p>
+	 * <p>Only the counters of the elite are kept. Each detector takes a
+	 * few bytes per individual, so the cache must be bounded according to
+	 * the number of individuals.</p>
+	 * @param countersCacheSize the maximum number of detectors whose counters
+	 * are kept, where 0 means that children are always evaluated from scratch.
+	 */
+	public void setCountersCacheSize (int countersCacheSize);
+	
+	/**
+	 * <p>Sets whether all the parents of a generation are selected at
+	 * once using stochastic universal sampling, instead of independently.</p>
+	 * @param universalSampling true to use stochastic universal sampling.
+	 */
+	public void setUniversalSampling (boolean universalSampling);
+	
+	/**
+	 * <p>Sets the selector used to choose the parents.</p>
+	 * @param selector the name of the selector, either
+	 * <em>RouletteSelector</em> or <em>TournamentSelector</em>.
+	 */
+	public void setSelector (String selector);
+	
+	/**
+	 * <p>Sets the number of detectors competing in each tournament,
+	 * when the tournament selector is used.</p>
+	 * @param tournamentSize the tournament size.
+	 */
+	public void setTournamentSize (int tournamentSize);
+	
+	/**
+	 * <p>Sets the master seed of the random generators, so that
+	 * runs over the same individuals can be reproduced.</p>
+	 * @param seed the master seed.
+	 */
+	public void setSeed (long seed);
+	
+	/**
+	 * <p>Sets the number of generations over which the improvement of the
+	 * best fitness is measured to stop the algorithm when it stagnates.</p>
+	 * @param stagnationWindow the number of generations, where 0 means that
+	 * the algorithm never stops due to stagnation.
+	 */
+	public void setStagnationWindow (int stagnationWindow);
+	
+	/**
+	 * <p>Sets the minimum improvement of the best fitness over the
+	 * stagnation window for the algorithm to continue.</p>
+	 * @param stagnationEpsilon the minimum improvement.
+	 */
+	public void setStagnationEpsilon (double stagnationEpsilon);
+	
+	/**
+	 * <p>Sets the workers holding the shards of the individuals, so that
+	 * the fitness of the detectors is calculated by them.</p>
+	 * <p>It must be set before the individuals, which are then split and
+	 * uploaded to the workers. Algorithms which require the individuals
+	 * locally, such as the co-evolutionary and the island algorithms,
+	 * ignore the shards.</p>
+	 * @param shards the addresses of the workers, as a comma-separated list
+	 * of <em>host:port</em>, or null to evaluate the individuals locally.
+	 */
+	public void setShards (String shards);
+	
+	/**
+	 * <p>Sets the file where checkpoints of the run are written, and
+	 * from which the run is resumed.</p>
+	 * @param checkpointFile the path of the checkpoint file.
+	 */
+	public void setCheckpointFile (String checkpointFile);
+	
+	/**
+	 * <p>Sets the number of generations between two consecutive checkpoints.</p>
+	 * @param checkpointInterval the number of generations, where 0 means that
+	 * no checkpoints are written.
+	 */
+	public void setCheckpointInterval (int checkpointInterval);
+	
+	/**
+	 * <p>Sets whether the run is resumed from the checkpoint file, if it exists.</p>
+	 * <p>If the file exists but cannot be read, or was written by a run with
+	 * another configuration, the run fails instead of starting from scratch.</p>
+	 * @param resume true to resume the run.
+	 */
+	public void setResume (boolean resume);
 }
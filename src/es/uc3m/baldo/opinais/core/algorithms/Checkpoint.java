@@ -0,0 +1,334 @@
+package es.uc3m.baldo.opinais.core.algorithms;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import es.uc3m.baldo.opinais.adt.BoundedList;
+import es.uc3m.baldo.opinais.core.BinaryFormat;
+import es.uc3m.baldo.opinais.core.BitVector;
+import es.uc3m.baldo.opinais.core.detectors.Detector;
+import es.uc3m.baldo.opinais.core.types.Type;
+
+/**
+ * Checkpoint.
+ * <p>Stores the state of an evolutionary run at a certain generation,
+ * so that the run can be resumed later: the populations of each type,
+ * the fitness of their detectors, the generation counter, the state of
+ * the master random generator and the recent best fitness values.</p>
+ * <p>The populations are stored as ranked when the checkpoint is taken,
+ * once the detectors have been evaluated and before the next generation
+ * is bred. Breeding only depends on the ranked detectors and the random
+ * generator, so a resumed run produces the same detectors as the
+ * original one.</p>
+ * <p>Checkpoints are stored in a compact binary format, where the
+ * schemas are written as packed 64-bit words.</p>
+ *
+ * @author Alejandro Baldominos
+ */
+public class Checkpoint {
+
+	/*
+	 * Header of the binary format ("OPCK") and its version.
+	 */
+	private static final int MAGIC = 0x4F50434B;
+	private static final int VERSION = 1;
+
+	/*
+	 * The generation, and the state of the master random generator
+	 * before breeding it.
+	 */
+	private int generation;
+	private long randomState;
+
+	/*
+	 * The detectors of each type, sorted by descending fitness, and
+	 * their fitness.
+	 */
+	private Map<Type, Detector[]> detectors;
+	private Map<Type, double[]> fitness;
+
+	/*
+	 * The best fitness of each type over the last generations.
+	 */
+	private Map<Type, double[]> bestFitness;
+
+	/**
+	 * <p>Takes a checkpoint of a run.</p>
+	 * <p>The ranked detectors and all the fitness values are copied, so the
+	 * run may continue, overwriting the slots of the populations, while the
+	 * checkpoint is written.</p>
+	 * @param generation the current generation.
+	 * @param randomState the state of the master random generator.
+	 * @param populations the populations of each type, ranked by descending
+	 * fitness.
+	 * @param bestFitness the best fitness of each type over the last
+	 * generations.
+	 */
+	public Checkpoint (int generation, long randomState, Map<Type, Population> populations,
+					   Map<Type, BoundedList<Double>> bestFitness) {
+		this.generation = generation;
+		this.randomState = randomState;
+		this.detectors = new LinkedHashMap<Type, Detector[]>();
+		this.fitness = new LinkedHashMap<Type, double[]>();
+		this.bestFitness = new LinkedHashMap<Type, double[]>();
+
+		for (Map.Entry<Type, Population> entry : populations.entrySet()) {
+			Detector[] ranked = new Detector[entry.getValue().size()];
+			double[] values = new double[ranked.length];
+			for (int i = 0; i < ranked.length; i++) {
+				Detector detector = entry.getValue().getRanked(i);
+				ranked[i] = detector.clone();
+				values[i] = detector.getFitness();
+				ranked[i].setFitness(values[i]);
+			}
+			this.detectors.put(entry.getKey(), ranked);
+			this.fitness.put(entry.getKey(), values);
+		}
+
+		for (Map.Entry<Type, BoundedList<Double>> entry : bestFitness.entrySet()) {
+			double[] values = new double[entry.getValue().size()];
+			int i = 0;
+			for (Double value : entry.getValue()) {
+				values[i++] = value;
+			}
+			this.bestFitness.put(entry.getKey(), values);
+		}
+	}
+
+	/*
+	 * Builds an empty checkpoint, to be filled when reading it.
+	 */
+	private Checkpoint () {
+		this.detectors = new LinkedHashMap<Type, Detector[]>();
+		this.fitness = new LinkedHashMap<Type, double[]>();
+		this.bestFitness = new LinkedHashMap<Type, double[]>();
+	}
+
+	/**
+	 * <p>Returns the generation in which the checkpoint was taken.</p>
+	 * @return the generation.
+	 */
+	public int getGeneration () {
+		return generation;
+	}
+
+	/**
+	 * <p>Returns the state of the master random generator when the
+	 * checkpoint was taken.</p>
+	 * @return the state of the random generator.
+	 */
+	public long getRandomState () {
+		return randomState;
+	}
+
+	/**
+	 * <p>Rebuilds the populations of each type.</p>
+	 * <p>The detectors are placed in the order of their ranks, which is
+	 * also the initial ranking of the new populations, so they can be bred
+	 * without being evaluated again.</p>
+	 * @return the populations of each type.
+	 */
+	public Map<Type, Population> getPopulations () {
+		Map<Type, Population> populations = new LinkedHashMap<Type, Population>();
+		for (Map.Entry<Type, Detector[]> entry : detectors.entrySet()) {
+			double[] values = fitness.get(entry.getKey());
+			List<Detector> ranked = new ArrayList<Detector>(entry.getValue().length);
+			for (int i = 0; i < values.length; i++) {
+				Detector detector = entry.getValue()[i];
+				detector.setFitness(values[i]);
+				ranked.add(detector);
+			}
+			populations.put(entry.getKey(), new Population(ranked));
+		}
+		return populations;
+	}
+
+	/**
+	 * <p>Returns the best fitness of each type over the last generations,
+	 * from the oldest to the most recent.</p>
+	 * @return the best fitness values of each type.
+	 */
+	public Map<Type, double[]> getBestFitness () {
+		return bestFitness;
+	}
+
+	/**
+	 * <p>Checks that the checkpoint was taken from a run with the same
+	 * configuration, so that it can be resumed.</p>
+	 * @param speciesSize the size of the detectors population.
+	 * @param featuresLength the number of features of each individual.
+	 * @throws IOException if the types, the number of detectors or the
+	 * length of their schemas differ from those of the run.
+	 */
+	public void validate (int speciesSize, int featuresLength) throws IOException {
+		Set<Type> types = new HashSet<Type>(Arrays.asList(Type.values()));
+		if (!detectors.keySet().equals(types)) {
+			throw new IOException("The checkpoint has the types " + detectors.keySet() 
+								  + ", but the run has " + types);
+		}
+		
+		int size = 0;
+		for (Detector[] ranked : detectors.values()) {
+			size += ranked.length;
+			if (ranked.length > 0 && ranked[0].pattern.length() != featuresLength) {
+				throw new IOException("The checkpoint has " + ranked[0].pattern.length() 
+									  + " features, but the run has " + featuresLength);
+			}
+		}
+		if (size != speciesSize) {
+			throw new IOException("The checkpoint has " + size + " detectors, but the species size is " + speciesSize);
+		}
+	}
+
+	/**
+	 * <p>Writes the checkpoint into a file.</p>
+	 * <p>The checkpoint is first written into a temporary file, which
+	 * then replaces the target file atomically, so a crash while writing
+	 * never corrupts the last checkpoint.</p>
+	 * @param file the file.
+	 * @throws IOException if the checkpoint cannot be written.
+	 */
+	public void write (File file) throws IOException {
+		File temporary = new File(file.getPath() + ".tmp");
+		FileOutputStream stream = new FileOutputStream(temporary);
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+			write(out);
+			out.flush();
+			stream.getFD().sync();
+		} finally {
+			stream.close();
+		}
+
+		Files.move(temporary.toPath(), file.toPath(),
+				   StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/*
+	 * Writes the checkpoint into a stream.
+	 */
+	private void write (DataOutputStream out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(generation);
+		out.writeLong(randomState);
+
+		// Writes the populations.
+		out.writeInt(detectors.size());
+		for (Map.Entry<Type, Detector[]> entry : detectors.entrySet()) {
+			Detector[] ranked = entry.getValue();
+			double[] values = fitness.get(entry.getKey());
+			out.writeUTF(entry.getKey().name());
+			out.writeInt(ranked.length);
+			out.writeInt(ranked.length > 0? ranked[0].threshold.length() : 0);
+			out.writeInt(ranked.length > 0? ranked[0].pattern.length() : 0);
+			for (int i = 0; i < ranked.length; i++) {
+				out.writeDouble(values[i]);
+				BinaryFormat.writeWords(out, ranked[i].threshold);
+				BinaryFormat.writeWords(out, ranked[i].pattern);
+				BinaryFormat.writeWords(out, ranked[i].mask);
+			}
+		}
+
+		// Writes the best fitness values.
+		out.writeInt(bestFitness.size());
+		for (Map.Entry<Type, double[]> entry : bestFitness.entrySet()) {
+			out.writeUTF(entry.getKey().name());
+			out.writeInt(entry.getValue().length);
+			for (double value : entry.getValue()) {
+				out.writeDouble(value);
+			}
+		}
+	}
+
+	/**
+	 * <p>Reads a checkpoint from a file.</p>
+	 * @param file the file.
+	 * @return the checkpoint.
+	 * @throws IOException if the file cannot be read, or it is not
+	 * a valid checkpoint for the current types.
+	 */
+	public static Checkpoint read (File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			return read(in);
+		} catch (EOFException e) {
+			throw new IOException("Truncated checkpoint file: " + file, e);
+		} finally {
+			in.close();
+		}
+	}
+
+	/*
+	 * Reads a checkpoint from a stream.
+	 */
+	private static Checkpoint read (DataInputStream in) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not a checkpoint file");
+		}
+		int version = in.readInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported checkpoint version: " + version);
+		}
+
+		Checkpoint checkpoint = new Checkpoint();
+		checkpoint.generation = in.readInt();
+		checkpoint.randomState = in.readLong();
+
+		// Reads the populations.
+		int types = in.readInt();
+		for (int t = 0; t < types; t++) {
+			Type type = BinaryFormat.getType(in.readUTF());
+			int size = in.readInt();
+			int thresholdLength = in.readInt();
+			int featuresLength = in.readInt();
+			if (size < 0) {
+				throw new IOException("Invalid number of detectors: " + size);
+			}
+			Detector[] ranked = new Detector[size];
+			double[] values = new double[size];
+			for (int i = 0; i < size; i++) {
+				values[i] = in.readDouble();
+				BitVector threshold = BinaryFormat.readWords(in, thresholdLength);
+				BitVector pattern = BinaryFormat.readWords(in, featuresLength);
+				BitVector mask = BinaryFormat.readWords(in, featuresLength);
+				ranked[i] = new Detector(type, threshold, pattern, mask);
+			}
+			checkpoint.detectors.put(type, ranked);
+			checkpoint.fitness.put(type, values);
+		}
+
+		// Reads the best fitness values.
+		types = in.readInt();
+		for (int t = 0; t < types; t++) {
+			Type type = BinaryFormat.getType(in.readUTF());
+			int size = in.readInt();
+			if (size < 0) {
+				throw new IOException("Invalid number of fitness values: " + size);
+			}
+			double[] values = new double[size];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = in.readDouble();
+			}
+			checkpoint.bestFitness.put(type, values);
+		}
+
+		return checkpoint;
+	}
+}
@@ -0,0 +1,79 @@
+package es.uc3m.baldo.opinais.core.algorithms;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CheckpointWriter.
+ * <p>Writes checkpoints into a file in a background thread, so the
+ * algorithm does not wait for the disk.</p>
+ * <p>Checkpoints are written in the order they are taken. If a checkpoint
+ * is still waiting to be written when a newer one is taken, the older one
+ * is discarded, since it would be replaced anyway.</p>
+ *
+ * @author Alejandro Baldominos
+ */
+public class CheckpointWriter {
+
+	/*
+	 * The file where checkpoints are written.
+	 */
+	private File file;
+
+	/*
+	 * The background thread, with room for a single pending checkpoint.
+	 */
+	private ThreadPoolExecutor executor;
+
+	/**
+	 * <p>Builds a new checkpoint writer.</p>
+	 * @param file the file where checkpoints are written.
+	 */
+	public CheckpointWriter (File file) {
+		this.file = file;
+		this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+											   new ArrayBlockingQueue<Runnable>(1),
+											   new ThreadFactory() {
+			@Override
+			public Thread newThread (Runnable runnable) {
+				Thread thread = new Thread(runnable, "checkpoint-writer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		}, new ThreadPoolExecutor.DiscardOldestPolicy());
+	}
+
+	/**
+	 * <p>Schedules a checkpoint to be written.</p>
+	 * @param checkpoint the checkpoint.
+	 */
+	public void write (final Checkpoint checkpoint) {
+		executor.execute(new Runnable() {
+			@Override
+			public void run () {
+				try {
+					checkpoint.write(file);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		});
+	}
+
+	/**
+	 * <p>Waits until the pending checkpoints are written, and
+	 * stops the background thread.</p>
+	 */
+	public void close () {
+		executor.shutdown();
+		try {
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
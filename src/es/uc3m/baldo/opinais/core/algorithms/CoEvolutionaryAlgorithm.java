@@ -1,17 +1,14 @@
 package es.uc3m.baldo.opinais.core.algorithms;
 
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
 
+import es.uc3m.baldo.opinais.core.BitSlicedDataset;
 import es.uc3m.baldo.opinais.core.Classifier;
 import es.uc3m.baldo.opinais.core.Individual;
 import es.uc3m.baldo.opinais.core.detectors.Detector;
-import es.uc3m.baldo.opinais.core.operators.CrossoverOperator;
-import es.uc3m.baldo.opinais.core.operators.MutationOperator;
-import es.uc3m.baldo.opinais.core.selectors.RouletteSelector;
 import es.uc3m.baldo.opinais.core.types.Type;
 
 /**
@@ -20,7 +17,7 @@ import es.uc3m.baldo.opinais.core.types.Type;
  * <p>The evolutionary algorithm evolves a population of detectors, based
  * on their fitness, which is calculated as the number of recognized individuals
  * minus the number of false positives.</p>
- * <p>A roulette selector method is used to select individuals. Uniform
+ * <p>A roulette (or tournament) selector is used to select individuals. Uniform
  * crossover and bit mutation is implemented to reproduce and mutate
  * detectors.</p>
  * <p>The co-evolutionary algorithm includes a second phase of fitness calculation,
@@ -28,6 +25,9 @@ import es.uc3m.baldo.opinais.core.types.Type;
  * the remaining types is evaluated.</p>
  * <p>This way, the algorithm benefits from the cooperation of detectors from
  * different types.</p>
+ * <p>The cooperative phase requires all the individuals in the master,
+ * so the individuals are never split in shards, and any shards set are
+ * ignored.</p>
  * 
  * @author Alejandro Baldominos
  */
@@ -65,6 +65,16 @@ public class CoEvolutionaryAlgorithm extends EvolutionaryAlgorithm {
 		this.penalizeUnclassified = penalizeUnclassified;
 	}
 	
+	/**
+	 * {@inheritDoc}
+	 * <p>The cooperative fitness is always calculated over the local
+	 * individuals, so the shards are ignored.</p>
+	 */
+	@Override
+	protected boolean requiresLocalIndividuals () {
+		return true;
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 * <p>The co-evolutionary algorithm includes a second phase of fitness calculation,
@@ -77,69 +87,65 @@ public class CoEvolutionaryAlgorithm extends EvolutionaryAlgorithm {
 	 */
 	@Override
 	public Classifier run () {
-		// Creates the initial population.
-		initializePopulation();
+		// Resumes the run from the last checkpoint, if required.
+		Checkpoint checkpoint = restore();
+		boolean resumed = checkpoint != null;
 		
-		// Splits the initial population in lists for each type.
-		Map<Type, List<Detector>> detectors = new HashMap<Type, List<Detector>>();
-		for (Type type : Type.values()) {
-			detectors.put(type, filterDetectors(this.detectors, type));
-		}
-
-		// Initializes the evolutionary operators.
-		RouletteSelector roulette = null;
-		CrossoverOperator crossover = new CrossoverOperator(crossoverRate);
-		MutationOperator mutation = new MutationOperator(mutationRate);
-		
-		int generation = 0;
-		while (!stop(generation)) {
-			// Calculates the fitness for each detector and sorts the lists by 
-			// descending fitness.
+		Map<Type, Population> detectors;
+		int generation;
+		if (resumed) {
+			detectors = checkpoint.getPopulations();
+			generation = checkpoint.getGeneration();
+		} else {
+			// Creates the initial population.
+			initializePopulation();
+			
+			// Splits the initial population in populations for each type.
+			detectors = new HashMap<Type, Population>();
 			for (Type type : Type.values()) {
-				for (Detector detector : detectors.get(type)) {
-					detector.setFitness(fitness(detector));
-				}
-				Collections.sort(detectors.get(type));
+				detectors.put(type, new Population(filterDetectors(this.detectors, type)));
 			}
-				
-			// Evolves the self detectors, cooperating with the best non-self detector.
-			for (Type type : Type.values()) {
-				// Initializes the map containing the best detectors for each type.
-				Map<Type, Detector> bestDetectors = new HashMap<Type, Detector>();
-				for (Type type2: Type.values()) {
-					bestDetectors.put(type2, detectors.get(type2).get(0));
-				}
-				
-				// Calculates the cooperative fitness for each detector of this type.
-				for (Detector detector : detectors.get(type)) {
-					// The detector of this type is replaced with the detector whose
-					// fitness is to be evaluated.
-					bestDetectors.put(type, detector);
-					detector.setFitness(fitness(bestDetectors));
+			generation = 0;
+		}
+
+		// The populations restored from a checkpoint are already evaluated
+		// and ranked with their cooperative fitness.
+		while (resumed || !stop(generation)) {
+			if (!resumed) {
+				// Calculates the fitness for each detector and ranks the best detectors
+				// of the populations by descending fitness.
+				for (Type type : Type.values()) {
+					evaluate(detectors.get(type));
+					rank(detectors.get(type));
 				}
 				
-				// Sorts the list of detectors by fitness
-				Collections.sort(detectors.get(type));
-			}
+				// Stores the valid matching ratios of the best detectors over the
+				// individuals, which are computed only once per generation for
+				// each detector acting as a partner.
+				Map<Detector, double[]> partnerRatios = new IdentityHashMap<Detector, double[]>();
 			
-			// Generates the new populations.
-			for (Type type : Type.values()) {
-				List<Detector> newDetectors = new LinkedList<Detector>();
+				// Evolves the self detectors, cooperating with the best non-self detector.
+				for (Type type : Type.values()) {
+					// Initializes the map containing the best detectors for each type.
+					Map<Type, Detector> bestDetectors = new LinkedHashMap<Type, Detector>();
+					for (Type type2: Type.values()) {
+						bestDetectors.put(type2, detectors.get(type2).getRanked(0));
+					}
 				
-				// Keeps the best individuals to maintain the elitism.
-				for (int i = 0; i < detectors.get(type).size() * elitism; i++) {
-					newDetectors.add(detectors.get(type).get(i));
-				}
+					// Calculates the cooperative fitness for each detector of this type.
+					evaluateCooperative(detectors.get(type), type, bestDetectors, partnerRatios);
 				
-				// Selects the new detectors.
-				roulette = new RouletteSelector(detectors.get(type));
-				while (newDetectors.size() < detectors.get(type).size()) {
-					newDetectors.add(generateChildDetector(roulette, crossover, mutation));
+					// Ranks the detectors by fitness.
+					rank(detectors.get(type));
+					recordBestFitness(type, detectors.get(type).getRanked(0).getFitness());
 				}
-				
-				// Replaces the generations.
-				detectors.put(type, newDetectors);
+				migrate(generation, detectors);
+				checkpoint(generation, detectors);
 			}
+			resumed = false;
+			
+			// Generates the new populations.
+			breed(detectors);
 
 			
 			if (maxGenerations >= 100 && generation % (maxGenerations / 100) == 0) {
@@ -149,71 +155,252 @@ public class CoEvolutionaryAlgorithm extends EvolutionaryAlgorithm {
 			// Increases the generations counter.
 			generation++;
 		}
+		closeCheckpoints();
 		
-		// Calculates the fitness for each detector and sorts the lists by 
-		// descending fitness.
+		// Calculates the fitness for each detector and ranks the best detectors
+		// of the populations by descending fitness.
 		for (Type type : Type.values()) {
-			for (Detector detector : detectors.get(type)) {
-				detector.setFitness(fitness(detector));
-			}
-			Collections.sort(detectors.get(type));
+			evaluate(detectors.get(type));
+			rank(detectors.get(type));
 		}
 		
 		// Creates the map with the best detectors.
-		Map<Type, Detector> bestDetectors = new HashMap<Type, Detector>();
+		Map<Type, Detector> bestDetectors = new LinkedHashMap<Type, Detector>();
 		for (Type type : Type.values()) {
-			bestDetectors.put(type, detectors.get(type).get(0));
+			bestDetectors.put(type, detectors.get(type).getRanked(0));
 			
 			// Prints the ultimate detectors.		
-			System.out.println("\t" + detectors.get(type).get(0));
+			System.out.println("\t" + detectors.get(type).getRanked(0));
 		}
 		
 		return new Classifier(bestDetectors);
 	}
 
+	/**
+	 * <p>Calculates and sets the cooperative fitness of a population of detectors
+	 * of the same type.</p>
+	 * <p>The valid matching ratios of the best detectors of the remaining
+	 * types are retrieved from a matrix shared across the generation, so
+	 * only the detector being evaluated is matched against the individuals.</p>
+	 * <p>If a pool of threads is available, the detectors are evaluated
+	 * in parallel. Otherwise, they are evaluated serially. In both cases
+	 * the resulting fitness values are the same.</p>
+	 * @param population the detectors to be evaluated.
+	 * @param type the type of the detectors.
+	 * @param bestDetectors the best detectors of each type.
+	 * @param partnerRatios the valid matching ratios of the detectors acting
+	 * as partners, which is completed with the missing best detectors.
+	 */
+	protected void evaluateCooperative (final Population population, Type type, 
+										Map<Type, Detector> bestDetectors,
+										Map<Detector, double[]> partnerRatios) {
+		// Builds the matrix of matching ratios, following the iteration
+		// order of the map so that ties are resolved as when classifying.
+		final Type[] types = bestDetectors.keySet().toArray(new Type[bestDetectors.size()]);
+		final double[][] ratios = new double[types.length][];
+		int candidate = -1;
+		for (int k = 0; k < types.length; k++) {
+			if (types[k] == type) {
+				// The detector of this type is replaced with the detector whose
+				// fitness is to be evaluated.
+				candidate = k;
+			} else {
+				Detector partner = bestDetectors.get(types[k]);
+				if (!partnerRatios.containsKey(partner)) {
+					partnerRatios.put(partner, validRatios(partner));
+				}
+				ratios[k] = partnerRatios.get(partner);
+			}
+		}
+		
+		// Infers the type of each individual using only the partners, and
+		// stores the highest valid ratio of the partners tried before and
+		// after the candidate type.
+		final Partners partners = new Partners(types, candidate, ratios);
+		
+		execute(new Evaluation() {
+			@Override
+			public void evaluate (int index) {
+				population.setFitness(index, fitness(population.get(index), partners));
+			}
+		}, population.size());
+	}
+	
+	/**
+	 * Partners.
+	 * <p>Stores the outcome of classifying the individuals with the best
+	 * detectors of the remaining types, i.e., all the information about the
+	 * partners required to calculate the cooperative fitness of a candidate.</p>
+	 * <p>Unless the candidate has a valid matching ratio for an individual,
+	 * the individual is classified as if the candidate did not exist. Hence,
+	 * the outcome of those individuals is stored as bitmaps (hits, misses
+	 * and unclassified), so that it can be counted with popcounts.</p>
+	 */
+	private class Partners {
+		
+		/*
+		 * The type of the candidate.
+		 */
+		private Type type;
+		
+		/*
+		 * The highest valid matching ratio of the partners tried before
+		 * and after the candidate type, for each individual.
+		 */
+		private double[] before;
+		private double[] after;
+		
+		/*
+		 * Bitmaps with the individuals correctly classified, misclassified
+		 * and unclassified by the partners.
+		 */
+		private long[] hits;
+		private long[] misses;
+		private long[] unclassified;
+		
+		/**
+		 * <p>Classifies the individuals with the partners.</p>
+		 * @param types the types, in the order in which they are tried.
+		 * @param candidate the position of the candidate type.
+		 * @param ratios the valid matching ratios of the partners (the row 
+		 * of the candidate type is ignored).
+		 */
+		public Partners (Type[] types, int candidate, double[][] ratios) {
+			Individual[] individuals = dataset.getIndividuals();
+			this.type = types[candidate];
+			this.before = new double[individuals.length];
+			this.after = new double[individuals.length];
+			this.hits = new long[dataset.getBlocks()];
+			this.misses = new long[dataset.getBlocks()];
+			this.unclassified = new long[dataset.getBlocks()];
+			
+			for (int i = 0; i < individuals.length; i++) {
+				// Stores the inferred type and the maximum valid matching ratio.
+				Type inferredType = null;
+				double highestMatch = 0.0;
+				
+				for (int k = 0; k < types.length; k++) {
+					if (k == candidate) {
+						continue;
+					}
+					double match = ratios[k][i];
+					if (k < candidate) {
+						before[i] = Math.max(before[i], match);
+					} else {
+						after[i] = Math.max(after[i], match);
+					}
+					if (match > highestMatch) {
+						highestMatch = match;
+						inferredType = types[k];
+					}
+				}
+				
+				long lane = 1L << i;
+				if (inferredType == null) {
+					unclassified[i / 64] |= lane;
+				} else if (inferredType == individuals[i].type) {
+					hits[i / 64] |= lane;
+				} else {
+					misses[i / 64] |= lane;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * <p>Calculates the valid matching ratios of a detector over the
+	 * individuals.</p>
+	 * <p>A matching ratio is valid when it exceeds the detector threshold.
+	 * Non-valid ratios are stored as 0, as they can never make the detector
+	 * win the classification of an individual.</p>
+	 * @param detector the detector.
+	 * @return the valid matching ratio for each individual, in the order
+	 * of the individuals in the dataset.
+	 */
+	private double[] validRatios (Detector detector) {
+		Individual[] individuals = dataset.getIndividuals();
+		double[] ratios = new double[individuals.length];
+		for (int i = 0; i < individuals.length; i++) {
+			ratios[i] = detector.matchesAbove(individuals[i])? detector.match(individuals[i]) : 0.0;
+		}
+		return ratios;
+	}
+	
 	/**
 	 * <p>Calculates the cooperative fitness.</p>
 	 * <p>This fitness is calculated for a detector of a given type, when
 	 * it is asked to cooperate with the best detectors of the remaining types
 	 * to guess the type of an individual.</p>
-	 * @param detectors the detector whose fitness is to be evaluated and the 
+	 * <p>The individuals for which the candidate has a valid matching ratio
+	 * are found with the bit-sliced dataset. The outcome of the remaining
+	 * individuals, as well as of those for which no partner has a valid
+	 * matching ratio, is counted with popcounts. The matching ratio of the
+	 * candidate is only calculated for the individuals where it competes
+	 * with some partner.</p>
+	 * @param candidate the detector whose fitness is to be evaluated.
+	 * @param partners the outcome of classifying the individuals with the
 	 * best detectors of the remaining types.
 	 * @return the value for the cooperative fitness.
 	 */
-	private double fitness (Map<Type, Detector> detectors) {
-		// Stores the fitness.
-		double fitness = 0.0;
-		
-		// Infers the type of the individual and checks
-		// whether it is a hit or a miss.
-		for (Individual individual : individuals) {
-			// Stores the inferred type.
-			Type inferredType = null;
-			
-			// Stores the maximum valid matching ratio.
-			double highestMatch = 0.0;
-			
-			// Iterates through all possible types.
-			for (Type type : detectors.keySet()) {
-				// Calculates the matching ratio with the best detector.			
-				Detector detector = detectors.get(type);
-				double match = detector.match(individual);
+	private double fitness (final Detector candidate, final Partners partners) {
+		// Infers the type of each individual and checks whether it is
+		// a hit or a miss. Individuals are split in chunks of blocks which
+		// may be evaluated in parallel.
+		final Individual[] individuals = dataset.getIndividuals();
+		final long[] sameType = dataset.getTypeBitmap(partners.type);
+		final int penalty = penalizeUnclassified ? 1 : 0;
+		double fitness = sum(new Score() {
+			@Override
+			public long score (int from, int to) {
+				// Stores the number of hits, misses and unclassified individuals.
+				long hits = 0;
+				long misses = 0;
+				long unclassified = 0;
 				
-				// This type would be the best type so far if its matching ratio
-				// is valid and exceeds the previous best valid matching ratio.
-				if (match > highestMatch && match > detector.decodedThreshold) {
-					highestMatch = match;
-					inferredType = type;
+				long[] valid = dataset.validMatch(candidate, from, to);
+				for (int w = from; w < to; w++) {
+					long candidateValid = valid[w - from];
+					
+					// Individuals classified by the partners alone.
+					hits += Long.bitCount(~candidateValid & partners.hits[w]);
+					misses += Long.bitCount(~candidateValid & partners.misses[w]);
+					unclassified += Long.bitCount(~candidateValid & partners.unclassified[w]);
+					
+					// Individuals classified by the candidate alone.
+					long alone = candidateValid & partners.unclassified[w];
+					hits += Long.bitCount(alone & sameType[w]);
+					misses += Long.bitCount(alone & ~sameType[w]);
+					
+					// Individuals where the candidate competes with some partner.
+					// The candidate wins if its ratio exceeds those of the types tried
+					// before, and is not exceeded by those of the types tried after.
+					// Otherwise, the outcome is the same as without the candidate.
+					long competing = candidateValid & ~partners.unclassified[w];
+					while (competing != 0) {
+						int i = w * 64 + Long.numberOfTrailingZeros(competing);
+						competing &= competing - 1;
+						
+						double match = candidate.match(individuals[i]);
+						if (match > partners.before[i] && match >= partners.after[i]) {
+							if (individuals[i].type == partners.type) {
+								hits++;
+							} else {
+								misses++;
+							}
+						} else if ((partners.hits[w] & (1L << i)) != 0) {
+							hits++;
+						} else {
+							misses++;
+						}
+					}
 				}
+				
+				return hits - misses - penalty * unclassified;
 			}
-			
-			// Checks if the inferred type is a hit or a miss.
-			double penalty = penalizeUnclassified ? 1 : 0;
-			fitness += inferredType == individual.type? 1 : inferredType == null? -penalty : -1;
-		}
+		}, dataset.getBlocks(), BitSlicedDataset.bitmapLength(chunkSize));
 		
 		// Fitness is calculated and normalized to obtain a number in the range [0,1].
-		fitness = (fitness + individuals.size()) / (2 * individuals.size());
+		fitness = (fitness + individuals.length) / (2 * individuals.length);
 				
 		return fitness;
 	}
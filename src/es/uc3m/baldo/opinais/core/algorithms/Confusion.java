@@ -0,0 +1,62 @@
+package es.uc3m.baldo.opinais.core.algorithms;
+
+/**
+ * Confusion.
+ * <p>Stores the confusion counts of a detector over a set of
+ * individuals, where positives are the individuals matched by
+ * the detector, and they are true when the individual has the
+ * same type as the detector.</p>
+ * <p>Counts over disjoint sets of individuals (e.g., shards) are
+ * added to obtain the counts over their union.</p>
+ *
+ * @author Alejandro Baldominos
+ */
+public class Confusion {
+
+	/**
+	 * <p>The number of matched individuals with the type of the detector.</p>
+	 */
+	public long truePositives;
+
+	/**
+	 * <p>The number of matched individuals with another type.</p>
+	 */
+	public long falsePositives;
+
+	/**
+	 * <p>The number of unmatched individuals with the type of the detector.</p>
+	 */
+	public long falseNegatives;
+
+	/**
+	 * <p>The number of unmatched individuals with another type.</p>
+	 */
+	public long trueNegatives;
+
+	/**
+	 * <p>Adds the counts over another set of individuals.</p>
+	 * @param other the counts to be added.
+	 */
+	public void add (Confusion other) {
+		this.truePositives += other.truePositives;
+		this.falsePositives += other.falsePositives;
+		this.falseNegatives += other.falseNegatives;
+		this.trueNegatives += other.trueNegatives;
+	}
+
+	/**
+	 * <p>Returns the number of individuals misclassified by the detector.</p>
+	 * @return the number of false positives and false negatives.
+	 */
+	public long misclassified () {
+		return falsePositives + falseNegatives;
+	}
+
+	/**
+	 * <p>Returns the number of individuals.</p>
+	 * @return the number of individuals counted.
+	 */
+	public long size () {
+		return truePositives + falsePositives + falseNegatives + trueNegatives;
+	}
+}
@@ -0,0 +1,131 @@
+package es.uc3m.baldo.opinais.core.algorithms;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import es.uc3m.baldo.opinais.core.Classifier;
+
+/**
+ * DistributedIslandAlgorithm.
+ * <p>Implements the island model over several processes, possibly
+ * running in different machines.</p>
+ * <p>This algorithm acts as the coordinator: it waits until as many
+ * {@link IslandWorker} processes as islands connect to its port, sends
+ * each one the settings of its island and the individuals, and collects
+ * their classifiers. Workers exchange their migrants directly with their
+ * neighbours, following the topology, through the {@link IslandProtocol}
+ * over TCP sockets.</p>
+ * <p>Each worker evolves its island as in {@link IslandAlgorithm}, and the
+ * resulting classifier is also the one of the best island.</p>
+ *
+ * @author Alejandro Baldominos
+ */
+public class DistributedIslandAlgorithm extends IslandAlgorithm {
+
+	/**
+	 * <p>The port where the coordinator waits for the workers.</p>
+	 */
+	protected int port;
+
+	/**
+	 * <p>Builds a new distributed island algorithm.</p>
+	 * @param islandAlgorithm the name of the algorithm run by each island, either
+	 * <em>EvolutionaryAlgorithm</em> or <em>CoEvolutionaryAlgorithm</em>.
+	 * @param islands the number of islands, i.e., of workers.
+	 * @param migrationInterval the number of generations between two consecutive
+	 * migrations, where 0 means that islands are isolated.
+	 * @param migrants the number of best detectors of each type sent by an island
+	 * to each of its neighbours in every migration.
+	 * @param topology the topology connecting the islands, either <em>ring</em>
+	 * or <em>complete</em>.
+	 * @param port the port where the coordinator waits for the workers.
+	 * @param speciesSize the size of the detectors population of each island.
+	 * @param typeBias the probability that a randomly created detector
+	 * detects self individuals.
+	 * @param generalityBias the probability that a bit in a randomly
+	 * created detector is a wildcard.
+	 * @param crossoverRate the probability that crossover is performed
+	 * over two parent detectors to obtain a child.
+	 * @param mutationRate the probability that mutation is performed
+	 * in a bit in the detector schema.
+	 * @param elitism percentage of the best individuals to be maintained across
+	 * generations.
+	 * @param penalizeUnclassified whether the cooperative fitness function must
+	 * penalize the case where the individual remains unclassified.
+	 * @param maxGenerations the maximum number of generations of each island.
+	 */
+	public DistributedIslandAlgorithm (String islandAlgorithm, int islands, int migrationInterval, int migrants,
+									   String topology, int port, int speciesSize, double typeBias,
+									   double generalityBias, double crossoverRate, double mutationRate,
+									   double elitism, boolean penalizeUnclassified, int maxGenerations) {
+		super(islandAlgorithm, islands, migrationInterval, migrants, topology, speciesSize, typeBias,
+			  generalityBias, crossoverRate, mutationRate, elitism, penalizeUnclassified, maxGenerations);
+		this.port = port;
+	}
+
+	/**
+	 * <p>Waits for the workers, sends them the setup of their islands
+	 * and waits until all of them send back their classifiers.</p>
+	 * @return the classifier of the island whose best detectors have the
+	 * highest fitness.
+	 */
+	@Override
+	public Classifier run () {
+		Socket[] workers = new Socket[islands];
+		try {
+			ServerSocket server = new ServerSocket(port);
+			DataInputStream[] in = new DataInputStream[islands];
+			DataOutputStream[] out = new DataOutputStream[islands];
+			InetSocketAddress[] addresses = new InetSocketAddress[islands];
+			try {
+				// Waits for the workers, which report the port where they
+				// receive migrants.
+				System.out.println("\tWaiting for " + islands + " workers on port " + server.getLocalPort() + "...");
+				for (int i = 0; i < islands; i++) {
+					workers[i] = server.accept();
+					in[i] = new DataInputStream(new BufferedInputStream(workers[i].getInputStream()));
+					out[i] = new DataOutputStream(new BufferedOutputStream(workers[i].getOutputStream()));
+					addresses[i] = new InetSocketAddress(workers[i].getInetAddress(), IslandProtocol.readHello(in[i]));
+					System.out.println("\tWorker " + i + " connected from " + addresses[i] + ".");
+				}
+			} finally {
+				server.close();
+			}
+
+			// Sends the setup of each island.
+			for (int i = 0; i < islands; i++) {
+				List<InetSocketAddress> neighbours = new ArrayList<InetSocketAddress>();
+				for (int neighbour : neighbours(i)) {
+					neighbours.add(addresses[neighbour]);
+				}
+				IslandProtocol.writeSetup(out[i], this, i, random.nextLong(), neighbours);
+			}
+
+			// Collects the classifiers of the islands.
+			Classifier[] classifiers = new Classifier[islands];
+			for (int i = 0; i < islands; i++) {
+				classifiers[i] = IslandProtocol.readResult(in[i]);
+			}
+
+			return bestClassifier(classifiers);
+		} catch (IOException e) {
+			throw new IllegalStateException("Distributed island model failed", e);
+		} finally {
+			for (Socket worker : workers) {
+				if (worker != null) {
+					try {
+						worker.close();
+					} catch (IOException e) { }
+				}
+			}
+		}
+	}
+}
@@ -1,18 +1,24 @@
 package es.uc3m.baldo.opinais.core.algorithms;
 
-import java.util.Collections;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 
+import es.uc3m.baldo.opinais.core.BitSlicedDataset;
 import es.uc3m.baldo.opinais.core.Classifier;
-import es.uc3m.baldo.opinais.core.Individual;
 import es.uc3m.baldo.opinais.core.detectors.Detector;
+import es.uc3m.baldo.opinais.core.detectors.Genome;
 import es.uc3m.baldo.opinais.core.operators.CrossoverOperator;
 import es.uc3m.baldo.opinais.core.operators.MutationOperator;
+import es.uc3m.baldo.opinais.core.random.SplitMixRandom;
 import es.uc3m.baldo.opinais.core.selectors.RouletteSelector;
 import es.uc3m.baldo.opinais.core.selectors.Selector;
+import es.uc3m.baldo.opinais.core.selectors.TournamentSelector;
 import es.uc3m.baldo.opinais.core.types.Type;
 
 /**
@@ -21,7 +27,7 @@ import es.uc3m.baldo.opinais.core.types.Type;
  * <p>The evolutionary algorithm evolves a population of detectors, based
  * on their fitness, which is calculated as the number of recognized individuals
  * minus the number of false positives.</p>
- * <p>A roulette selector method is used to select individuals. Uniform
+ * <p>A roulette (or tournament) selector is used to select individuals. Uniform
  * crossover and bit mutation is implemented to reproduce and mutate
  * detectors.</p>
  * 
@@ -46,6 +52,17 @@ public class EvolutionaryAlgorithm extends AbstractAlgorithm {
 	 * generations.</p>
 	 */
 	protected double elitism;
+	
+	/*
+	 * Number of children generated with the same random generator.
+	 */
+	private static final int BREEDING_BLOCK = 64;
+	
+	/**
+	 * <p>The migration performed each generation, once the populations
+	 * have been ranked, or null if the populations are isolated.</p>
+	 */
+	protected Migration migration;
 		
 	/**
 	 * <p>Builds a new evolutionary algorithm.</p>
@@ -71,12 +88,22 @@ public class EvolutionaryAlgorithm extends AbstractAlgorithm {
 		this.elitism = elitism;
 	}
 	
+	/**
+	 * <p>Sets the migration performed each generation, which exchanges
+	 * detectors with other populations.</p>
+	 * @param migration the migration, or null if the populations are
+	 * isolated.
+	 */
+	public void setMigration (Migration migration) {
+		this.migration = migration;
+	}
+	
 	/**
 	 * <p>Runs the evolutionary algorithm.</p>
 	 * <p>The evolutionary algorithm evolves a population of detectors, based
 	 * on their fitness, which is calculated as the number of recognized individuals
 	 * minus the number of false positives.</p>
-	 * <p>A roulette selector method is used to select individuals. Uniform
+	 * <p>A roulette (or tournament) selector is used to select individuals. Uniform
 	 * crossover and bit mutation is implemented to reproduce and mutate
 	 * detectors.</p>
 	 * @return a classifier which maps a type to the best detector found by 
@@ -84,50 +111,45 @@ public class EvolutionaryAlgorithm extends AbstractAlgorithm {
 	 */
 	@Override
 	public Classifier run () {
-		// Creates the initial population.
-		initializePopulation();
+		// Resumes the run from the last checkpoint, if required.
+		Checkpoint checkpoint = restore();
+		boolean resumed = checkpoint != null;
 		
-		// Splits the initial population in lists for each type.
-		Map<Type, List<Detector>> detectors = new HashMap<Type, List<Detector>>();
-		for (Type type : Type.values()) {
-			detectors.put(type, filterDetectors(this.detectors, type));
+		Map<Type, Population> detectors;
+		int generation;
+		if (resumed) {
+			detectors = checkpoint.getPopulations();
+			generation = checkpoint.getGeneration();
+		} else {
+			// Creates the initial population.
+			initializePopulation();
+			
+			// Splits the initial population in populations for each type.
+			detectors = new HashMap<Type, Population>();
+			for (Type type : Type.values()) {
+				detectors.put(type, new Population(filterDetectors(this.detectors, type)));
+			}
+			generation = 0;
 		}
 
-		// Initializes the evolutionary operators.
-		RouletteSelector roulette = null;
-		CrossoverOperator crossover = new CrossoverOperator(crossoverRate);
-		MutationOperator mutation = new MutationOperator(mutationRate);
-		
-		int generation = 0;
-		// The algorithm runs while the stop condition is not met.
-		while (!stop(generation)) {
-			// Calculates the fitness for each detector and sorts the lists by 
-			// descending fitness.
-			for (Type type : Type.values()) {
-				for (Detector detector : detectors.get(type)) {
-					detector.setFitness(fitness(detector));
+		// The algorithm runs while the stop condition is not met. The populations
+		// restored from a checkpoint are already evaluated and ranked.
+		while (resumed || !stop(generation)) {
+			if (!resumed) {
+				// Calculates the fitness for each detector and ranks the best detectors
+				// of the populations by descending fitness.
+				for (Type type : Type.values()) {
+					evaluate(detectors.get(type));
+					rank(detectors.get(type));
+					recordBestFitness(type, detectors.get(type).getRanked(0).getFitness());
 				}
-				Collections.sort(detectors.get(type));
+				migrate(generation, detectors);
+				checkpoint(generation, detectors);
 			}
+			resumed = false;
 			
 			// Generates the new populations.
-			for (Type type : Type.values()) {
-				List<Detector> newDetectors = new LinkedList<Detector>();
-				
-				// Keeps the best individuals to maintain the elitism.
-				for (int i = 0; i < detectors.get(type).size() * elitism; i++) {
-					newDetectors.add(detectors.get(type).get(i));
-				}
-				
-				// Selects the new detectors.
-				roulette = new RouletteSelector(detectors.get(type));
-				while (newDetectors.size() < detectors.get(type).size()) {
-					newDetectors.add(generateChildDetector(roulette, crossover, mutation));
-				}
-				
-				// Replaces the generations.
-				detectors.put(type, newDetectors);
-			}
+			breed(detectors);
 
 			if (generation % (maxGenerations / 100) == 0) {
 				System.out.println("\t" + generation / (maxGenerations / 100) + "% completed.");
@@ -136,29 +158,130 @@ public class EvolutionaryAlgorithm extends AbstractAlgorithm {
 			// Increases the generations counter.
 			generation++;
 		}
+		closeCheckpoints();
 		
-		
-		// Calculates the fitness for each detector and sorts the lists by 
-		// descending fitness.
+		// Calculates the fitness for each detector and ranks the best detectors
+		// of the populations by descending fitness.
 		for (Type type : Type.values()) {
-			for (Detector detector : detectors.get(type)) {
-				detector.setFitness(fitness(detector));
-			}
-			Collections.sort(detectors.get(type));
+			evaluate(detectors.get(type));
+			rank(detectors.get(type));
 		}
 		
 		// Creates the map with the best detectors.
-		Map<Type, Detector> bestDetectors = new HashMap<Type, Detector>();
+		Map<Type, Detector> bestDetectors = new LinkedHashMap<Type, Detector>();
 		for (Type type : Type.values()) {
-			bestDetectors.put(type, detectors.get(type).get(0));
+			bestDetectors.put(type, detectors.get(type).getRanked(0));
 			
 			// Prints the ultimate detectors.		
-			System.out.println("\t" + detectors.get(type).get(0));
+			System.out.println("\t" + detectors.get(type).getRanked(0));
 		}
 
 		return new Classifier(bestDetectors);
 	}
 	
+	/**
+	 * <p>Generates the next generation of the populations of each type.</p>
+	 * <p>The best detectors are kept to maintain the elitism, and the
+	 * remaining ones are replaced by children. All the parents of every
+	 * population are selected at once before any child is generated.</p>
+	 * <p>Children are generated in blocks, each using its own random
+	 * generator split from the master one. If a pool of threads is
+	 * available, the blocks of all the populations are generated in
+	 * parallel, so breeding one type overlaps with breeding and evaluating
+	 * the others, and no thread waits for a type to finish before starting
+	 * with the next one. Since blocks and generators do not depend on the
+	 * number of threads, the resulting populations are the same in both
+	 * cases.</p>
+	 * <p>Unless the individuals are split in shards, each child is evaluated
+	 * by the same thread right after generating it, while the detectors of
+	 * the block are still in its cache, so the next evaluation only needs to
+	 * evaluate the elite.</p>
+	 * @param populations the populations of each type, with their elite ranked
+	 * by descending fitness, which are replaced by the next generation.
+	 */
+	protected void breed (Map<Type, Population> populations) {
+		// Prepares the breeding of each population, in the order of the types,
+		// which is the order in which the master generator is used.
+		final List<Breeding> breedings = new ArrayList<Breeding>();
+		final List<Integer> offsets = new ArrayList<Integer>();
+		int blocks = 0;
+		for (Type type : Type.values()) {
+			if (populations.containsKey(type)) {
+				Breeding breeding = new Breeding(populations.get(type));
+				breedings.add(breeding);
+				offsets.add(blocks);
+				blocks += breeding.blocks();
+			}
+		}
+		
+		// Generates the new detectors of all the populations.
+		execute(new Evaluation() {
+			@Override
+			public void evaluate (int block) {
+				int b = breedings.size() - 1;
+				while (offsets.get(b) > block) {
+					b--;
+				}
+				breedings.get(b).breed(block - offsets.get(b));
+			}
+		}, blocks);
+		
+		// Replaces the generations.
+		for (Breeding breeding : breedings) {
+			breeding.population.swap();
+		}
+	}
+	
+	/**
+	 * <p>Performs the migration, if any, between the ranked populations
+	 * and other populations, and ranks them again, since the detectors
+	 * received may be better than the elite.</p>
+	 * @param generation the current generation.
+	 * @param populations the populations of each type, ranked by descending
+	 * fitness.
+	 */
+	protected void migrate (int generation, Map<Type, Population> populations) {
+		if (migration != null) {
+			migration.migrate(generation, populations);
+			for (Population population : populations.values()) {
+				rank(population);
+			}
+		}
+	}
+	
+	/**
+	 * <p>Ranks the detectors required to generate the next generation of a
+	 * population, i.e., the elite, or at least the best detector.</p>
+	 * <p>The remaining detectors are not sorted, since they are only used
+	 * as parents, and selectors do not depend on their order.</p>
+	 * @param population the population to be ranked.
+	 */
+	protected void rank (Population population) {
+		population.rank(Math.max(1, eliteSize(population)));
+	}
+	
+	/**
+	 * <p>Returns the number of best detectors of a population that are
+	 * kept in the next generation to maintain the elitism.</p>
+	 * @param population the population.
+	 * @return the number of elite detectors.
+	 */
+	protected int eliteSize (Population population) {
+		return Math.min(population.size(), Math.max(0, (int) Math.ceil(population.size() * elitism)));
+	}
+	
+	/**
+	 * <p>Builds the selector used to choose the parents from a population.</p>
+	 * @param population the detectors, with the elite sorted by descending fitness.
+	 * @return the selector.
+	 */
+	protected Selector makeSelector (Detector[] population) {
+		if (selector.equals("TournamentSelector")) {
+			return new TournamentSelector(population, tournamentSize, random);
+		}
+		return new RouletteSelector(population, universalSampling, random);
+	}
+	
 	/**
 	 * <p>Generates a new child detector.</p>
 	 * @param selector a selector which will provide two parent detectors.
@@ -173,13 +296,436 @@ public class EvolutionaryAlgorithm extends AbstractAlgorithm {
 		Detector parent1 = selector.selectDetector();
 		Detector parent2 = selector.selectDetector();
 
+		return generateChildDetector(parent1, parent2, crossover, mutator);
+	}
+	
+	/**
+	 * <p>Generates a new child detector from two parents.</p>
+	 * @param parent1 the first parent detector.
+	 * @param parent2 the second parent detector.
+	 * @param crossover a crossover operator to cross the two parents into
+	 * a child detector.
+	 * @param mutator a mutation operator to mutate the child detector.
+	 * @return a child detector after crossover and mutation operators are applied.
+	 */
+	protected Detector generateChildDetector (Detector parent1, Detector parent2,
+											  CrossoverOperator crossover, MutationOperator mutator) {
+		Detector child = parent1.clone();
+		generateChildDetector(parent1, parent2, child, crossover, mutator);
+		return child;
+	}
+	
+	/**
+	 * <p>Generates a child detector from two parents into an existing
+	 * detector, e.g., a slot of the next generation, so that no detector
+	 * is allocated.</p>
+	 * @param parent1 the first parent detector.
+	 * @param parent2 the second parent detector.
+	 * @param child the detector where the child is written, which must not
+	 * be any of the parents.
+	 * @param crossover a crossover operator to cross the two parents into
+	 * the child detector.
+	 * @param mutator a mutation operator to mutate the child detector.
+	 */
+	protected void generateChildDetector (Detector parent1, Detector parent2, Detector child,
+										  CrossoverOperator crossover, MutationOperator mutator) {
 		// Generates a new child detector using crossover.
-		Detector child = crossover.crossover(parent1, parent2);
+		crossover.crossover(parent1, parent2, child);
 		
 		// Performs mutation over the child detector.
-		child = mutator.mutate(child);
+		mutator.mutate(child);
+	}
+	
+	/**
+	 * <p>Calculates and sets the fitness of a population of detectors.</p>
+	 * <p>If a pool of threads is available, the detectors are evaluated
+	 * in parallel. Otherwise, they are evaluated serially. In both cases
+	 * the resulting fitness values are the same.</p>
+	 * <p>The children which were already evaluated when they were bred
+	 * are skipped.</p>
+	 * <p>If the individuals are split in shards, the detectors are evaluated
+	 * over them instead.</p>
+	 * @param population the detectors to be evaluated.
+	 */
+	protected void evaluate (final Population population) {
+		if (shards != null) {
+			evaluateShards(population);
+			return;
+		}
+		
+		execute(new Evaluation() {
+			@Override
+			public void evaluate (int index) {
+				if (!population.isEvaluated(index)) {
+					population.setFitness(index, cachedFitness(population.get(index)));
+				}
+			}
+		}, population.size());
+	}
+	
+	/**
+	 * <p>Calculates and sets the fitness of a population of detectors over
+	 * the shards of the individuals.</p>
+	 * <p>The detectors whose genomes are not cached are sent to the shards
+	 * in a single batch, once per genome, and the fitness is calculated from
+	 * the sum of their confusion counts over each shard. The resulting fitness
+	 * values are the same as if the individuals were evaluated locally.</p>
+	 * @param population the detectors to be evaluated.
+	 */
+	protected void evaluateShards (Population population) {
+		// Retrieves the cached fitness values, and collects the
+		// remaining genomes in a batch.
+		double[] values = new double[population.size()];
+		int[] positions = new int[population.size()];
+		Map<Genome, Integer> genomes = new HashMap<Genome, Integer>();
+		List<Detector> batch = new ArrayList<Detector>();
+		for (int i = 0; i < population.size(); i++) {
+			Genome genome = population.get(i).getGenome();
+			Double cached = fitnessCache == null? null : fitnessCache.get(genome);
+			if (cached != null) {
+				values[i] = cached;
+				positions[i] = -1;
+			} else {
+				if (!genomes.containsKey(genome)) {
+					genomes.put(genome, batch.size());
+					batch.add(population.get(i));
+				}
+				positions[i] = genomes.get(genome);
+			}
+		}
+		
+		// Evaluates the batch over the shards.
+		Confusion[] counts = countShards(batch.toArray(new Detector[batch.size()]));
+		double[] fitness = new double[counts.length];
+		for (int j = 0; j < counts.length; j++) {
+			fitness[j] = fitness(counts[j].misclassified(), counts[j].size());
+			if (fitnessCache != null) {
+				fitnessCache.put(batch.get(j).getGenome().copy(), fitness[j]);
+			}
+		}
+		
+		for (int i = 0; i < population.size(); i++) {
+			population.setFitness(i, positions[i] < 0? values[i] : fitness[positions[i]]);
+		}
+	}
+	
+	/**
+	 * <p>Executes an evaluation for a number of detectors, either
+	 * in the pool of threads or serially in the calling thread if no
+	 * pool is available.</p>
+	 * @param evaluation the evaluation of a single detector.
+	 * @param size the number of detectors to be evaluated.
+	 */
+	protected void execute (Evaluation evaluation, int size) {
+		if (pool == null) {
+			for (int i = 0; i < size; i++) {
+				evaluation.evaluate(i);
+			}
+		} else {
+			pool.invoke(new EvaluationTask(evaluation, 0, size));
+		}
+	}
+	
+	/**
+	 * Breeding.
+	 * <p>Generates the children of the next generation of a population,
+	 * in blocks which may be generated concurrently.</p>
+	 * <p>The elite, the parents and the random generators of every block are
+	 * chosen when the breeding is built, so the master generator is only used
+	 * by the thread running the algorithm.</p>
+	 */
+	private class Breeding {
+		
+		/*
+		 * The population, its elite size and the number of children.
+		 */
+		private Population population;
+		private int elite;
+		private int children;
+		
+		/*
+		 * The selector, and the indexes of two parents for each child.
+		 */
+		private Selector selector;
+		private int[] parents;
+		
+		/*
+		 * The random generator of each block of children.
+		 */
+		private SplitMixRandom[] generators;
+		
+		/*
+		 * Whether children are evaluated as soon as they are generated.
+		 */
+		private boolean evaluate;
+		
+		/*
+		 * Keeps the elite, selects the parents and splits the generators.
+		 */
+		private Breeding (Population population) {
+			this.population = population;
+			
+			// Keeps the best individuals to maintain the elitism, as well
+			// as their counters, so their mutated copies are evaluated
+			// incrementally.
+			this.elite = eliteSize(population);
+			for (int i = 0; i < elite; i++) {
+				population.setNext(i, population.getRanked(i));
+			}
+			keepCounters(population, elite);
+			
+			// Selects two parents for each of the new detectors.
+			this.children = Math.max(0, population.size() - elite);
+			this.selector = makeSelector(population.getRanked());
+			this.parents = population.getParentsBuffer(2 * children);
+			selector.select(parents);
+			
+			// Splits a random generator for each block of children.
+			this.generators = new SplitMixRandom[(children + BREEDING_BLOCK - 1) / BREEDING_BLOCK];
+			for (int b = 0; b < generators.length; b++) {
+				generators[b] = random.split();
+			}
+			
+			// Children evaluated over shards are sent in a single batch instead.
+			this.evaluate = shards == null;
+		}
+		
+		/*
+		 * Returns the number of blocks of children.
+		 */
+		private int blocks () {
+			return generators.length;
+		}
+		
+		/*
+		 * Generates, and possibly evaluates, a block of children, which are
+		 * written directly into the slots of the next generation.
+		 */
+		private void breed (int block) {
+			CrossoverOperator crossover = new CrossoverOperator(crossoverRate, generators[block]);
+			MutationOperator mutator = new MutationOperator(mutationRate, generators[block]);
+			int to = Math.min(children, (block + 1) * BREEDING_BLOCK);
+			for (int i = block * BREEDING_BLOCK; i < to; i++) {
+				Detector child = population.getNext(elite + i);
+				generateChildDetector(selector.getDetector(parents[2*i]), 
+									  selector.getDetector(parents[2*i+1]),
+									  child, crossover, mutator);
+				if (evaluate) {
+					population.setNext(elite + i, child, cachedFitness(child));
+				} else {
+					population.setNext(elite + i, child);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Migration.
+	 * <p>Exchanges detectors between the populations of an algorithm and
+	 * other populations, e.g., those evolved by other algorithms.</p>
+	 * <p>It is performed each generation by the thread running the
+	 * algorithm, once the populations have been evaluated and ranked,
+	 * and before the next generation is bred.</p>
+	 */
+	public interface Migration {
+		
+		/**
+		 * <p>Exchanges detectors with other populations.</p>
+		 * <p>The populations are ranked again afterwards, so detectors
+		 * may replace others without ranking them. Detectors sent to other
+		 * populations must be copied, since the slots of a population are
+		 * overwritten by the next generations.</p>
+		 * @param generation the current generation.
+		 * @param populations the populations of each type, ranked by
+		 * descending fitness.
+		 */
+		public void migrate (int generation, Map<Type, Population> populations);
+	}
+	
+	/**
+	 * Evaluation.
+	 * <p>Evaluates a single detector, identified by its index.</p>
+	 * <p>Evaluations of different detectors may run concurrently,
+	 * so they must not share mutable state.</p>
+	 */
+	protected interface Evaluation {
+		
+		/**
+		 * <p>Evaluates a detector.</p>
+		 * @param index the index of the detector.
+		 */
+		public void evaluate (int index);
+	}
+	
+	/**
+	 * EvaluationTask.
+	 * <p>Evaluates a range of detectors, splitting it recursively
+	 * so that the evaluation is spread over a pool of threads.</p>
+	 * <p>Each detector is evaluated exactly once, by a single thread.</p>
+	 */
+	private static class EvaluationTask extends RecursiveAction {
 
-		return child;
+		private static final long serialVersionUID = 1L;
+
+		/*
+		 * The evaluation of a single detector.
+		 */
+		private Evaluation evaluation;
+		
+		/*
+		 * The range of detectors to be evaluated.
+		 */
+		private int from;
+		private int to;
+		
+		/**
+		 * <p>Builds a new evaluation task.</p>
+		 * @param evaluation the evaluation of a single detector.
+		 * @param from the first detector to be evaluated (inclusive).
+		 * @param to the last detector to be evaluated (exclusive).
+		 */
+		public EvaluationTask (Evaluation evaluation, int from, int to) {
+			this.evaluation = evaluation;
+			this.from = from;
+			this.to = to;
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected void compute () {
+			if (to - from <= 1) {
+				for (int i = from; i < to; i++) {
+					evaluation.evaluate(i);
+				}
+			} else {
+				// Splits the range in two halves.
+				int middle = (from + to) >>> 1;
+				invokeAll(new EvaluationTask(evaluation, from, middle),
+						  new EvaluationTask(evaluation, middle, to));
+			}
+		}
+	}
+	
+	/**
+	 * <p>Sums the partial scores of a range of items (e.g., individuals)
+	 * split in chunks.</p>
+	 * <p>If a pool of threads is available and the range is larger than
+	 * a chunk, the chunks are scored in parallel and the partial scores
+	 * are added as the tasks join, without sharing any state. Otherwise,
+	 * the whole range is scored in the calling thread.</p>
+	 * @param score the score of a range of items.
+	 * @param size the number of items.
+	 * @param chunk the number of items in each chunk.
+	 * @return the sum of the scores of all the items.
+	 */
+	protected long sum (Score score, int size, int chunk) {
+		if (pool == null || size <= chunk) {
+			return score.score(0, size);
+		}
+		
+		// Tasks invoked from a thread of the pool (e.g., when detectors
+		// are already being evaluated in parallel) are run directly, so
+		// that the thread helps processing its own chunks.
+		SumTask task = new SumTask(score, 0, size, Math.max(1, chunk));
+		return ForkJoinTask.inForkJoinPool()? task.invoke() : pool.invoke(task);
+	}
+	
+	/**
+	 * Score.
+	 * <p>Scores a range of items.</p>
+	 * <p>Different ranges may be scored concurrently, so they must
+	 * not share mutable state.</p>
+	 */
+	protected interface Score {
+		
+		/**
+		 * <p>Scores a range of items.</p>
+		 * @param from the first item to be scored (inclusive).
+		 * @param to the last item to be scored (exclusive).
+		 * @return the partial score of the range.
+		 */
+		public long score (int from, int to);
+	}
+	
+	/**
+	 * SumTask.
+	 * <p>Scores a range of items, splitting it recursively until
+	 * the range fits in a chunk, and adds the partial scores.</p>
+	 */
+	private static class SumTask extends RecursiveTask<Long> {
+
+		private static final long serialVersionUID = 1L;
+
+		/*
+		 * The score of a range of items.
+		 */
+		private Score score;
+		
+		/*
+		 * The range of items to be scored, and the size of the chunks.
+		 */
+		private int from;
+		private int to;
+		private int chunk;
+		
+		/**
+		 * <p>Builds a new sum task.</p>
+		 * @param score the score of a range of items.
+		 * @param from the first item to be scored (inclusive).
+		 * @param to the last item to be scored (exclusive).
+		 * @param chunk the number of items in each chunk.
+		 */
+		public SumTask (Score score, int from, int to, int chunk) {
+			this.score = score;
+			this.from = from;
+			this.to = to;
+			this.chunk = chunk;
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		protected Long compute () {
+			if (to - from <= chunk) {
+				return score.score(from, to);
+			}
+			
+			// Splits the range in two halves, scoring the second one
+			// asynchronously.
+			int middle = (from + to) >>> 1;
+			SumTask right = new SumTask(score, middle, to, chunk);
+			right.fork();
+			long left = new SumTask(score, from, middle, chunk).compute();
+			return left + right.join();
+		}
+	}
+	
+	/**
+	 * <p>Retrieves the fitness of a detector from the cache, calculating
+	 * and caching it if it was not found.</p>
+	 * <p>As the fitness only depends on the genome of the detector, clones
+	 * and elite detectors carried across generations are not evaluated
+	 * again.</p>
+	 * <p>The fitness is cached under a copy of the genome, since the
+	 * genome follows its detector when the slot is overwritten.</p>
+	 * @param detector the detector whose fitness is to be retrieved.
+	 * @return the detector fitness in the range [0,1].
+	 */
+	protected double cachedFitness (Detector detector) {
+		if (fitnessCache == null) {
+			return fitness(detector);
+		}
+		
+		Genome genome = detector.getGenome();
+		Double fitness = fitnessCache.get(genome);
+		if (fitness == null) {
+			fitness = fitness(detector);
+			fitnessCache.put(genome.copy(), fitness);
+		}
+		return fitness;
 	}
 	
 	/**
@@ -191,25 +737,103 @@ public class EvolutionaryAlgorithm extends AbstractAlgorithm {
 	 * <p>The fitness is normalized in the range [0,1] to prevent
 	 * negative filters, which may cause malfunctions in some selectors,
 	 * such as the roulette.</p>
+	 * <p>If the match counters of the detector parent are kept, the matches
+	 * of the detector are derived from them by only visiting the positions
+	 * which changed during mutation. Otherwise, e.g., for crossed children,
+	 * the individuals matched are found directly, without counters.</p>
 	 * @param detector the detector whose fitness is to be calculated.
 	 * @return the detector fitness in the range [0,1].
 	 */
-	protected double fitness (Detector detector) {
-		// Stores the fitness.
-		double fitness = 0.0;
-
-		// Checks the matching for each individual.
-		for (Individual individual : individuals) {
-			double matchingPct = detector.match(individual);
-			if (matchingPct >= detector.decodedThreshold) {
-				fitness += detector.type == individual.type? 1 : -1;
-			} else {
-				fitness += detector.type == individual.type? -1 : 1;
+	protected double fitness (final Detector detector) {
+		// Retrieves the counters of the parent, which are only used when
+		// the detector differs from it in a few positions.
+		final Genome parent = detector.getParentGenome();
+		final long[] parentCounters = countersCache == null || parent == null
+				|| parent.getType() != detector.type
+				|| 2 * parent.distance(detector) >= detector.getComparisons()? null : countersCache.get(parent);
+		final long[] counters = parentCounters == null? null : dataset.newCounters();
+		final int minimum = BitSlicedDataset.minimumMatches(detector.getComparisons(), detector.decodedThreshold);
+		
+		// Counts the misclassified individuals, split in chunks of blocks
+		// which may be evaluated in parallel.
+		long misclassified = sum(new Score() {
+			@Override
+			public long score (int from, int to) {
+				// Retrieves the individuals matched by the detector, either
+				// directly or through the counters derived from its parent.
+				long[] matched;
+				if (counters == null) {
+					matched = dataset.match(detector, from, to);
+				} else {
+					dataset.update(parent, parentCounters, detector, counters, from, to);
+					matched = dataset.atLeast(counters, minimum, from, to);
+				}
+				
+				// Retrieves the individuals belonging to the detector type.
+				long[] sameType = dataset.getTypeBitmap(detector.type);
+				
+				// An individual is correctly classified when it is matched
+				// and has the same type, or when it is not matched and has
+				// a different type. Otherwise, it is misclassified.
+				long misclassified = 0;
+				for (int i = 0; i < matched.length; i++) {
+					misclassified += Long.bitCount(matched[i] ^ sameType[from + i]);
+				}
+				return misclassified;
+			}
+		}, dataset.getBlocks(), BitSlicedDataset.bitmapLength(chunkSize));
+		
+		return fitness(misclassified, dataset.size());
+	}
+	
+	/**
+	 * <p>Keeps the match counters of the elite of a population, which are
+	 * the detectors most likely to be copied into the next generation, so
+	 * that their mutated copies are evaluated incrementally.</p>
+	 * <p>Only the counters of elite detectors which are not kept yet are
+	 * counted, so an elite detector carried across generations is counted
+	 * once. Counters are not kept for any other detector, since they take
+	 * a few bytes per individual.</p>
+	 * @param population the population, with its elite ranked.
+	 * @param elite the number of elite detectors.
+	 */
+	protected void keepCounters (Population population, int elite) {
+		if (countersCache == null || dataset == null) {
+			return;
+		}
+		
+		for (int i = 0; i < elite; i++) {
+			final Detector detector = population.getRanked(i);
+			if (countersCache.get(detector.getGenome()) != null) {
+				continue;
 			}
+			
+			// Counts the matches, split in chunks of blocks which may be
+			// counted in parallel.
+			final long[] counters = dataset.newCounters();
+			sum(new Score() {
+				@Override
+				public long score (int from, int to) {
+					dataset.count(detector, counters, from, to);
+					return 0;
+				}
+			}, dataset.getBlocks(), BitSlicedDataset.bitmapLength(chunkSize));
+			countersCache.put(detector.getGenome().copy(), counters);
 		}
+	}
+	
+	/**
+	 * <p>Calculates the normalized fitness of a detector from the number
+	 * of individuals it misclassifies.</p>
+	 * @param misclassified the number of misclassified individuals.
+	 * @param size the number of individuals.
+	 * @return the detector fitness in the range [0,1].
+	 */
+	protected double fitness (long misclassified, long size) {
+		double fitness = (size - misclassified) - misclassified;
 
 		// Fitness is normalized to obtain a number in the range [0,1].
-		fitness = (fitness + individuals.size()) / (2 * individuals.size());
+		fitness = (fitness + size) / (2 * size);
 		
 		return fitness;
 	}
@@ -224,7 +848,7 @@ public class EvolutionaryAlgorithm extends AbstractAlgorithm {
 	 * the detectors of the specified type.
 	 */
 	protected List<Detector> filterDetectors (List<Detector> detectors, Type type) {
-		List<Detector> filtered = new LinkedList<Detector>();
+		List<Detector> filtered = new ArrayList<Detector>();
 		
 		// Iterates through all the detectors checking whether they
 		// have the specified type.
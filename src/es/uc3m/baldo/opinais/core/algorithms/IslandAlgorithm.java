@@ -0,0 +1,376 @@
+package es.uc3m.baldo.opinais.core.algorithms;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import es.uc3m.baldo.opinais.core.Classifier;
+import es.uc3m.baldo.opinais.core.detectors.Detector;
+import es.uc3m.baldo.opinais.core.types.Type;
+
+/**
+ * IslandAlgorithm.
+ * <p>Implements the island model of parallel evolution.</p>
+ * <p>Several independent evolutionary (or co-evolutionary) algorithms,
+ * the islands, evolve their own populations of detectors, each one in
+ * its own thread. Every few generations, each island sends copies of
+ * its best detectors of each type to its neighbour islands, which replace
+ * their worst detectors with them.</p>
+ * <p>Detectors migrate through lock-free queues, and islands never wait
+ * for each other, so there is no barrier per generation. An island takes
+ * the detectors which have arrived when it migrates, if any. Therefore,
+ * unlike the islands themselves, the whole run is not reproducible from
+ * the seed.</p>
+ * <p>Each island evolves <em>speciesSize</em> detectors, evaluated
+ * serially in its thread, and all the islands share the same individuals.
+ * The resulting classifier is the one of the island whose best detectors
+ * have the highest fitness, so that the detectors of the different types
+ * have evolved together.</p>
+ *
+ * @author Alejandro Baldominos
+ */
+public class IslandAlgorithm extends AbstractAlgorithm {
+
+	/**
+	 * <p>The name of the algorithm run by each island, either
+	 * <em>EvolutionaryAlgorithm</em> or <em>CoEvolutionaryAlgorithm</em>.</p>
+	 */
+	protected String islandAlgorithm;
+
+	/**
+	 * <p>The number of islands.</p>
+	 */
+	protected int islands;
+
+	/**
+	 * <p>The number of generations between two consecutive migrations,
+	 * where 0 means that islands are isolated.</p>
+	 */
+	protected int migrationInterval;
+
+	/**
+	 * <p>The number of best detectors of each type sent by an island to
+	 * each of its neighbours in every migration.</p>
+	 */
+	protected int migrants;
+
+	/**
+	 * <p>The topology connecting the islands, either <em>ring</em>, where
+	 * each island sends detectors to the next one, or <em>complete</em>,
+	 * where each island sends detectors to all the other ones.</p>
+	 */
+	protected String topology;
+
+	/**
+	 * <p>The probability that crossover is performed over
+	 * two parent detectors to obtain a child.</p>
+	 */
+	protected double crossoverRate;
+
+	/**
+	 * <p>The probability that mutation is performed in a bit
+	 * in the detector schema.</p>
+	 */
+	protected double mutationRate;
+
+	/**
+	 * <p>Percentage of the best individuals to be maintained across
+	 * generations.</p>
+	 */
+	protected double elitism;
+
+	/**
+	 * <p>Whether the cooperative fitness function must penalize the
+	 * case where the individual remains unclassified, or just ignore
+	 * it. Only used by co-evolutionary islands.</p>
+	 */
+	protected boolean penalizeUnclassified;
+
+	/**
+	 * <p>Builds a new island algorithm.</p>
+	 * @param islandAlgorithm the name of the algorithm run by each island, either
+	 * <em>EvolutionaryAlgorithm</em> or <em>CoEvolutionaryAlgorithm</em>.
+	 * @param islands the number of islands.
+	 * @param migrationInterval the number of generations between two consecutive
+	 * migrations, where 0 means that islands are isolated.
+	 * @param migrants the number of best detectors of each type sent by an island
+	 * to each of its neighbours in every migration.
+	 * @param topology the topology connecting the islands, either <em>ring</em>
+	 * or <em>complete</em>.
+	 * @param speciesSize the size of the detectors population of each island.
+	 * @param typeBias the probability that a randomly created detector
+	 * detects self individuals.
+	 * @param generalityBias the probability that a bit in a randomly
+	 * created detector is a wildcard.
+	 * @param crossoverRate the probability that crossover is performed
+	 * over two parent detectors to obtain a child.
+	 * @param mutationRate the probability that mutation is performed
+	 * in a bit in the detector schema.
+	 * @param elitism percentage of the best individuals to be maintained across
+	 * generations.
+	 * @param penalizeUnclassified whether the cooperative fitness function must
+	 * penalize the case where the individual remains unclassified.
+	 * @param maxGenerations the maximum number of generations of each island.
+	 */
+	public IslandAlgorithm (String islandAlgorithm, int islands, int migrationInterval, int migrants,
+							String topology, int speciesSize, double typeBias, double generalityBias,
+							double crossoverRate, double mutationRate, double elitism,
+							boolean penalizeUnclassified, int maxGenerations) {
+		super(speciesSize, typeBias, generalityBias, maxGenerations);
+		if (!islandAlgorithm.equals("EvolutionaryAlgorithm") && !islandAlgorithm.equals("CoEvolutionaryAlgorithm")) {
+			throw new IllegalArgumentException("Unknown island algorithm: " + islandAlgorithm);
+		}
+		if (!topology.equals("ring") && !topology.equals("complete")) {
+			throw new IllegalArgumentException("Unknown topology: " + topology);
+		}
+		this.islandAlgorithm = islandAlgorithm;
+		this.islands = islands;
+		this.migrationInterval = migrationInterval;
+		this.migrants = migrants;
+		this.topology = topology;
+		this.crossoverRate = crossoverRate;
+		this.mutationRate = mutationRate;
+		this.elitism = elitism;
+		this.penalizeUnclassified = penalizeUnclassified;
+	}
+
+	/**
+	 * <p>Runs the islands, each one in its own thread, and waits until
+	 * all of them finish.</p>
+	 * @return the classifier of the island whose best detectors have the
+	 * highest fitness.
+	 */
+	@Override
+	public Classifier run () {
+		// Creates the islands, and the queues where the detectors
+		// migrating to each island are received.
+		final EvolutionaryAlgorithm[] algorithms = new EvolutionaryAlgorithm[islands];
+		List<Queue<Detector>> inboxes = new ArrayList<Queue<Detector>>(islands);
+		for (int i = 0; i < islands; i++) {
+			algorithms[i] = makeIsland(i, random.nextLong());
+			inboxes.add(new ConcurrentLinkedQueue<Detector>());
+		}
+
+		// Connects the islands according to the topology.
+		for (int i = 0; i < islands; i++) {
+			List<Queue<Detector>> neighbours = new ArrayList<Queue<Detector>>();
+			for (int neighbour : neighbours(i)) {
+				neighbours.add(inboxes.get(neighbour));
+			}
+			algorithms[i].setMigration(new IslandMigration(migrationInterval, migrants, inboxes.get(i), neighbours));
+		}
+
+		// Runs each island in its own thread.
+		final Classifier[] classifiers = new Classifier[islands];
+		final Throwable[] errors = new Throwable[islands];
+		Thread[] threads = new Thread[islands];
+		for (int i = 0; i < islands; i++) {
+			final int island = i;
+			threads[i] = new Thread(new Runnable() {
+				@Override
+				public void run () {
+					try {
+						classifiers[island] = algorithms[island].run();
+					} catch (Throwable e) {
+						errors[island] = e;
+					}
+				}
+			}, "island-" + i);
+			threads[i].start();
+		}
+
+		for (int i = 0; i < islands; i++) {
+			try {
+				threads[i].join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while waiting for the islands", e);
+			}
+			if (errors[i] != null) {
+				throw new IllegalStateException("Island " + i + " failed", errors[i]);
+			}
+		}
+
+		return bestClassifier(classifiers);
+	}
+
+	/**
+	 * <p>Returns the islands to which an island sends its best detectors,
+	 * according to the topology.</p>
+	 * @param island the number of the island.
+	 * @return the numbers of the neighbour islands.
+	 */
+	protected List<Integer> neighbours (int island) {
+		List<Integer> neighbours = new ArrayList<Integer>();
+		for (int j = 1; j < islands; j++) {
+			neighbours.add((island + j) % islands);
+			if (topology.equals("ring")) {
+				break;
+			}
+		}
+		return neighbours;
+	}
+
+	/**
+	 * <p>Retrieves the classifier of the best island, i.e., the one whose
+	 * best detectors have the highest fitness.</p>
+	 * @param classifiers the classifiers of all the islands.
+	 * @return the classifier of the best island.
+	 */
+	protected Classifier bestClassifier (Classifier[] classifiers) {
+		Classifier best = null;
+		double bestFitness = Double.NEGATIVE_INFINITY;
+		for (Classifier classifier : classifiers) {
+			double fitness = 0;
+			for (Detector detector : classifier.getDetectors().values()) {
+				fitness += detector.getFitness();
+			}
+			if (fitness > bestFitness) {
+				best = classifier;
+				bestFitness = fitness;
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>The islands share the local individuals, and never evaluate them
+	 * over shards, so the shards are ignored.</p>
+	 */
+	@Override
+	protected boolean requiresLocalIndividuals () {
+		return true;
+	}
+
+	/**
+	 * <p>Builds the algorithm run by an island, with the same settings
+	 * as this algorithm and its own seed.</p>
+	 * <p>All the islands share the bit-sliced representation of the
+	 * individuals, rather than building one each.</p>
+	 * @param island the number of the island.
+	 * @param seed the seed of the island.
+	 * @return the algorithm of the island.
+	 */
+	protected EvolutionaryAlgorithm makeIsland (int island, long seed) {
+		EvolutionaryAlgorithm algorithm;
+		if (islandAlgorithm.equals("CoEvolutionaryAlgorithm")) {
+			algorithm = new CoEvolutionaryAlgorithm(speciesSize, typeBias, generalityBias, crossoverRate,
+													mutationRate, elitism, penalizeUnclassified, maxGenerations);
+		} else {
+			algorithm = new EvolutionaryAlgorithm(speciesSize, typeBias, generalityBias, crossoverRate,
+												  mutationRate, elitism, maxGenerations);
+		}
+
+		algorithm.individuals = individuals;
+		algorithm.dataset = dataset;
+		algorithm.featuresLength = featuresLength;
+
+		algorithm.setChunkSize(chunkSize);
+		algorithm.setFitnessCacheSize(fitnessCache == null? 0 : fitnessCache.getBound());
+		algorithm.setCountersCacheSize(countersCache == null? 0 : countersCache.getBound());
+		algorithm.setUniversalSampling(universalSampling);
+		algorithm.setSelector(selector);
+		algorithm.setTournamentSize(tournamentSize);
+		algorithm.setSeed(seed);
+		algorithm.setStagnationWindow(stagnationWindow);
+		algorithm.setStagnationEpsilon(stagnationEpsilon);
+		if (checkpointFile != null) {
+			algorithm.setCheckpointFile(checkpointFile + "." + island);
+		}
+		algorithm.setCheckpointInterval(checkpointInterval);
+		algorithm.setResume(resume);
+
+		return algorithm;
+	}
+
+	/**
+	 * IslandMigration.
+	 * <p>Sends the best detectors of an island to its neighbours, and
+	 * replaces its worst detectors with those received from other islands.</p>
+	 */
+	protected static class IslandMigration implements EvolutionaryAlgorithm.Migration {
+
+		/*
+		 * The number of generations between two consecutive migrations,
+		 * and the number of best detectors of each type sent to each neighbour.
+		 */
+		private int migrationInterval;
+		private int migrants;
+
+		/*
+		 * The queue where the detectors migrating to the island are received.
+		 */
+		private Queue<Detector> inbox;
+
+		/*
+		 * The queues of the neighbour islands.
+		 */
+		private List<Queue<Detector>> neighbours;
+
+		/**
+		 * <p>Builds the migration of an island.</p>
+		 * @param migrationInterval the number of generations between two
+		 * consecutive migrations, where 0 means that the island is isolated.
+		 * @param migrants the number of best detectors of each type sent to
+		 * each neighbour in every migration.
+		 * @param inbox the queue where the detectors migrating to the
+		 * island are received.
+		 * @param neighbours the queues of the neighbour islands.
+		 */
+		public IslandMigration (int migrationInterval, int migrants, 
+								Queue<Detector> inbox, List<Queue<Detector>> neighbours) {
+			this.migrationInterval = migrationInterval;
+			this.migrants = migrants;
+			this.inbox = inbox;
+			this.neighbours = neighbours;
+		}
+
+		/**
+		 * {@inheritDoc}
+		 */
+		@Override
+		public void migrate (int generation, Map<Type, Population> populations) {
+			if (migrationInterval <= 0 || generation == 0 || generation % migrationInterval != 0) {
+				return;
+			}
+
+			// Sends copies of the best detectors, so that islands never
+			// share a detector (whose slot they overwrite). Populations are
+			// only ranked up to their elite, so the migrants are ranked first.
+			for (Population population : populations.values()) {
+				population.rank(migrants);
+				for (int i = 0; i < Math.min(migrants, population.size()); i++) {
+					Detector detector = population.getRanked(i);
+					for (Queue<Detector> neighbour : neighbours) {
+						Detector migrant = detector.clone();
+						migrant.setFitness(detector.getFitness());
+						neighbour.offer(migrant);
+					}
+				}
+			}
+
+			// Receives the detectors which have arrived so far.
+			Map<Type, List<Detector>> arrivals = new LinkedHashMap<Type, List<Detector>>();
+			Detector detector;
+			while ((detector = inbox.poll()) != null) {
+				if (!arrivals.containsKey(detector.type)) {
+					arrivals.put(detector.type, new ArrayList<Detector>());
+				}
+				arrivals.get(detector.type).add(detector);
+			}
+
+			// Replaces the worst detectors of each type.
+			for (Map.Entry<Type, List<Detector>> entry : arrivals.entrySet()) {
+				Population population = populations.get(entry.getKey());
+				if (population != null) {
+					population.replaceWorst(entry.getValue());
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,319 @@
+package es.uc3m.baldo.opinais.core.algorithms;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import es.uc3m.baldo.opinais.core.BinaryFormat;
+import es.uc3m.baldo.opinais.core.BitVector;
+import es.uc3m.baldo.opinais.core.Classifier;
+import es.uc3m.baldo.opinais.core.Individual;
+import es.uc3m.baldo.opinais.core.detectors.Detector;
+import es.uc3m.baldo.opinais.core.types.Type;
+
+/**
+ * IslandProtocol.
+ * <p>Implements the binary protocol spoken by the coordinator and the
+ * workers of a distributed island model, over plain sockets.</p>
+ * <p>A worker connects to the coordinator and sends a <em>hello</em>
+ * with the port where it receives migrants. Once all the workers have
+ * connected, the coordinator sends each one a <em>setup</em> with the
+ * settings of its island, the individuals and the addresses of its
+ * neighbours. Then, each worker connects to its neighbours and sends
+ * them a stream of migrant detectors while it evolves. When the island
+ * finishes, the worker sends its best detectors back to the coordinator
+ * as the <em>result</em>.</p>
+ * <p>Bit vectors are written as packed 64-bit words, and types by name,
+ * so that workers need no configuration besides the address of the
+ * coordinator.</p>
+ *
+ * @author Alejandro Baldominos
+ */
+public class IslandProtocol {
+
+	/*
+	 * Header of the protocol ("OPIS") and its version.
+	 */
+	private static final int MAGIC = 0x4F504953;
+	private static final int VERSION = 1;
+
+	/**
+	 * Setup.
+	 * <p>Stores the setup of the island run by a worker.</p>
+	 */
+	public static class Setup {
+
+		/**
+		 * <p>An island algorithm holding the settings and the individuals,
+		 * from which the island is built.</p>
+		 */
+		public IslandAlgorithm settings;
+
+		/**
+		 * <p>The number of the island.</p>
+		 */
+		public int island;
+
+		/**
+		 * <p>The seed of the island.</p>
+		 */
+		public long seed;
+
+		/**
+		 * <p>The addresses where the neighbour islands receive migrants.</p>
+		 */
+		public List<InetSocketAddress> neighbours;
+	}
+
+	/**
+	 * <p>Writes the greeting of a worker.</p>
+	 * @param out the stream to the coordinator.
+	 * @param port the port where the worker receives migrants.
+	 * @throws IOException if the greeting cannot be written.
+	 */
+	public static void writeHello (DataOutputStream out, int port) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(port);
+		out.flush();
+	}
+
+	/**
+	 * <p>Reads the greeting of a worker.</p>
+	 * @param in the stream from the worker.
+	 * @return the port where the worker receives migrants.
+	 * @throws IOException if the greeting cannot be read, or the worker
+	 * speaks another protocol or version.
+	 */
+	public static int readHello (DataInputStream in) throws IOException {
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Not an island worker");
+		}
+		int version = in.readInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported protocol version: " + version);
+		}
+		return in.readInt();
+	}
+
+	/**
+	 * <p>Writes the setup of an island.</p>
+	 * @param out the stream to the worker.
+	 * @param settings the island algorithm whose settings and individuals
+	 * are sent.
+	 * @param island the number of the island.
+	 * @param seed the seed of the island.
+	 * @param neighbours the addresses where the neighbour islands
+	 * receive migrants.
+	 * @throws IOException if the setup cannot be written.
+	 */
+	public static void writeSetup (DataOutputStream out, IslandAlgorithm settings, int island, long seed,
+								   List<InetSocketAddress> neighbours) throws IOException {
+		out.writeInt(island);
+		out.writeLong(seed);
+
+		// Writes the parameters of the algorithm.
+		out.writeUTF(settings.islandAlgorithm);
+		out.writeInt(settings.migrationInterval);
+		out.writeInt(settings.migrants);
+		out.writeUTF(settings.topology);
+		out.writeInt(settings.speciesSize);
+		out.writeDouble(settings.typeBias);
+		out.writeDouble(settings.generalityBias);
+		out.writeDouble(settings.crossoverRate);
+		out.writeDouble(settings.mutationRate);
+		out.writeDouble(settings.elitism);
+		out.writeBoolean(settings.penalizeUnclassified);
+		out.writeInt(settings.maxGenerations);
+
+		// Writes the optional settings.
+		out.writeInt(settings.chunkSize);
+		out.writeInt(settings.fitnessCache == null? 0 : settings.fitnessCache.getBound());
+		out.writeInt(settings.countersCache == null? 0 : settings.countersCache.getBound());
+		out.writeBoolean(settings.universalSampling);
+		out.writeUTF(settings.selector);
+		out.writeInt(settings.tournamentSize);
+		out.writeInt(settings.stagnationWindow);
+		out.writeDouble(settings.stagnationEpsilon);
+		out.writeUTF(settings.checkpointFile == null? "" : settings.checkpointFile);
+		out.writeInt(settings.checkpointInterval);
+		out.writeBoolean(settings.resume);
+
+		// Writes the types and the individuals.
+		writeIndividuals(out, settings.individuals, settings.featuresLength);
+
+		// Writes the neighbours.
+		out.writeInt(neighbours.size());
+		for (InetSocketAddress neighbour : neighbours) {
+			out.writeUTF(neighbour.getAddress().getHostAddress());
+			out.writeInt(neighbour.getPort());
+		}
+		out.flush();
+	}
+
+	/**
+	 * <p>Reads the setup of an island.</p>
+	 * <p>The types which are not known yet are added, so they must be
+	 * read before any other message.</p>
+	 * @param in the stream from the coordinator.
+	 * @return the setup of the island.
+	 * @throws IOException if the setup cannot be read.
+	 */
+	public static Setup readSetup (DataInputStream in) throws IOException {
+		Setup setup = new Setup();
+		setup.island = in.readInt();
+		setup.seed = in.readLong();
+
+		// Reads the parameters of the algorithm.
+		IslandAlgorithm settings = new IslandAlgorithm(in.readUTF(), 1, in.readInt(), in.readInt(), in.readUTF(),
+													   in.readInt(), in.readDouble(), in.readDouble(), in.readDouble(),
+													   in.readDouble(), in.readDouble(), in.readBoolean(), in.readInt());
+
+		// Reads the optional settings.
+		settings.setChunkSize(in.readInt());
+		settings.setFitnessCacheSize(in.readInt());
+		settings.setCountersCacheSize(in.readInt());
+		settings.setUniversalSampling(in.readBoolean());
+		settings.setSelector(in.readUTF());
+		settings.setTournamentSize(in.readInt());
+		settings.setStagnationWindow(in.readInt());
+		settings.setStagnationEpsilon(in.readDouble());
+		String checkpointFile = in.readUTF();
+		if (!checkpointFile.isEmpty()) {
+			settings.setCheckpointFile(checkpointFile);
+		}
+		settings.setCheckpointInterval(in.readInt());
+		settings.setResume(in.readBoolean());
+
+		// Reads the types and the individuals.
+		settings.setIndividuals(readIndividuals(in));
+		setup.settings = settings;
+
+		// Reads the neighbours.
+		int neighbours = in.readInt();
+		setup.neighbours = new ArrayList<InetSocketAddress>(neighbours);
+		for (int i = 0; i < neighbours; i++) {
+			setup.neighbours.add(new InetSocketAddress(in.readUTF(), in.readInt()));
+		}
+
+		return setup;
+	}
+
+	/**
+	 * <p>Writes all the types and a set of individuals.</p>
+	 * @param out the stream.
+	 * @param individuals the individuals.
+	 * @param featuresLength the number of features of each individual.
+	 * @throws IOException if the individuals cannot be written.
+	 */
+	public static void writeIndividuals (DataOutputStream out, Collection<Individual> individuals, 
+										 int featuresLength) throws IOException {
+		out.writeInt(Type.values().length);
+		for (Type type : Type.values()) {
+			out.writeUTF(type.name());
+		}
+		out.writeInt(individuals.size());
+		out.writeInt(featuresLength);
+		for (Individual individual : individuals) {
+			out.writeUTF(individual.type.name());
+			BinaryFormat.writeWords(out, individual.bits);
+		}
+	}
+
+	/**
+	 * <p>Reads the types and a set of individuals.</p>
+	 * <p>The types which are not known yet are added, so they must be
+	 * read before any detector.</p>
+	 * @param in the stream.
+	 * @return the individuals, in the order they were written.
+	 * @throws IOException if the individuals cannot be read.
+	 */
+	public static Set<Individual> readIndividuals (DataInputStream in) throws IOException {
+		int types = in.readInt();
+		for (int t = 0; t < types; t++) {
+			BinaryFormat.getOrAddType(in.readUTF());
+		}
+		int size = in.readInt();
+		int featuresLength = in.readInt();
+		Set<Individual> individuals = new LinkedHashSet<Individual>(2 * size);
+		for (int i = 0; i < size; i++) {
+			Type type = BinaryFormat.getType(in.readUTF());
+			individuals.add(new Individual(type, BinaryFormat.readWords(in, featuresLength)));
+		}
+		return individuals;
+	}
+
+	/**
+	 * <p>Writes a migrant detector.</p>
+	 * @param out the stream to the neighbour island.
+	 * @param detector the detector.
+	 * @throws IOException if the detector cannot be written.
+	 */
+	public static void writeDetector (DataOutputStream out, Detector detector) throws IOException {
+		out.writeUTF(detector.type.name());
+		out.writeDouble(detector.getFitness());
+		out.writeInt(detector.threshold.length());
+		out.writeInt(detector.pattern.length());
+		BinaryFormat.writeWords(out, detector.threshold);
+		BinaryFormat.writeWords(out, detector.pattern);
+		BinaryFormat.writeWords(out, detector.mask);
+	}
+
+	/**
+	 * <p>Reads a migrant detector.</p>
+	 * @param in the stream from the neighbour island.
+	 * @return the detector, with its fitness.
+	 * @throws IOException if the detector cannot be read.
+	 */
+	public static Detector readDetector (DataInputStream in) throws IOException {
+		Type type = BinaryFormat.getType(in.readUTF());
+		double fitness = in.readDouble();
+		int thresholdLength = in.readInt();
+		int featuresLength = in.readInt();
+		BitVector threshold = BinaryFormat.readWords(in, thresholdLength);
+		BitVector pattern = BinaryFormat.readWords(in, featuresLength);
+		BitVector mask = BinaryFormat.readWords(in, featuresLength);
+		Detector detector = new Detector(type, threshold, pattern, mask);
+		detector.setFitness(fitness);
+		return detector;
+	}
+
+	/**
+	 * <p>Writes the classifier found by an island.</p>
+	 * @param out the stream to the coordinator.
+	 * @param classifier the classifier.
+	 * @throws IOException if the classifier cannot be written.
+	 */
+	public static void writeResult (DataOutputStream out, Classifier classifier) throws IOException {
+		out.writeInt(classifier.getDetectors().size());
+		for (Detector detector : classifier.getDetectors().values()) {
+			writeDetector(out, detector);
+		}
+		out.flush();
+	}
+
+	/**
+	 * <p>Reads the classifier found by an island.</p>
+	 * @param in the stream from the worker.
+	 * @return the classifier, whose detectors keep the order in which
+	 * the worker tries them.
+	 * @throws IOException if the classifier cannot be read.
+	 */
+	public static Classifier readResult (DataInputStream in) throws IOException {
+		int size = in.readInt();
+		Map<Type, Detector> detectors = new LinkedHashMap<Type, Detector>();
+		for (int i = 0; i < size; i++) {
+			Detector detector = readDetector(in);
+			detectors.put(detector.type, detector);
+		}
+		return new Classifier(detectors);
+	}
+}
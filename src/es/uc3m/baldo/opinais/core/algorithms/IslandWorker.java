@@ -0,0 +1,153 @@
+package es.uc3m.baldo.opinais.core.algorithms;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import es.uc3m.baldo.opinais.core.Classifier;
+import es.uc3m.baldo.opinais.core.detectors.Detector;
+
+/**
+ * IslandWorker.
+ * <p>Runs an island of a {@link DistributedIslandAlgorithm} in its
+ * own process.</p>
+ * <p>The worker connects to the coordinator, receives the setup of its
+ * island and evolves it, sending its best detectors to its neighbours and
+ * receiving theirs through TCP sockets. Migrants are exchanged with the
+ * algorithm through in-memory queues, which background threads fill and
+ * drain, so the evolution never waits for the network.</p>
+ * <p>Usage: <em>IslandWorker host port</em>, where <em>host</em> and
+ * <em>port</em> are those of the coordinator.</p>
+ *
+ * @author Alejandro Baldominos
+ */
+public class IslandWorker {
+
+	/*
+	 * Maximum number of migrants waiting to be sent to each neighbour.
+	 * Further migrants are discarded, e.g., if the neighbour has finished.
+	 */
+	private static final int OUTBOX_CAPACITY = 1024;
+
+	/**
+	 * <p>Runs a worker.</p>
+	 * @param args the host and port of the coordinator.
+	 * @throws IOException if the communication with the coordinator fails.
+	 */
+	public static void main (String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: IslandWorker host port");
+			System.exit(1);
+		}
+
+		Socket coordinator = new Socket(args[0], Integer.parseInt(args[1]));
+		DataInputStream in = new DataInputStream(new BufferedInputStream(coordinator.getInputStream()));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(coordinator.getOutputStream()));
+
+		// Opens the port where migrants are received, and reports it.
+		final ServerSocket migrations = new ServerSocket(0);
+		IslandProtocol.writeHello(out, migrations.getLocalPort());
+
+		IslandProtocol.Setup setup = IslandProtocol.readSetup(in);
+		System.out.println("Running island " + setup.island + "...");
+
+		// Receives the migrants from the neighbours.
+		final Queue<Detector> inbox = new ConcurrentLinkedQueue<Detector>();
+		startDaemon(new Runnable() {
+			@Override
+			public void run () {
+				try {
+					while (true) {
+						receive(migrations.accept(), inbox);
+					}
+				} catch (IOException e) {
+					// The server socket is closed when the island finishes.
+				}
+			}
+		}, "migrations-acceptor");
+
+		// Sends the migrants to the neighbours.
+		List<Queue<Detector>> outboxes = new ArrayList<Queue<Detector>>();
+		for (InetSocketAddress neighbour : setup.neighbours) {
+			BlockingQueue<Detector> outbox = new LinkedBlockingQueue<Detector>(OUTBOX_CAPACITY);
+			send(new Socket(neighbour.getAddress(), neighbour.getPort()), outbox);
+			outboxes.add(outbox);
+		}
+
+		// Evolves the island.
+		EvolutionaryAlgorithm algorithm = setup.settings.makeIsland(setup.island, setup.seed);
+		algorithm.setMigration(new IslandAlgorithm.IslandMigration(setup.settings.migrationInterval,
+																   setup.settings.migrants, inbox, outboxes));
+		Classifier classifier = algorithm.run();
+
+		IslandProtocol.writeResult(out, classifier);
+		migrations.close();
+		coordinator.close();
+	}
+
+	/*
+	 * Reads the migrants sent through a connection into the inbox,
+	 * until the neighbour closes it.
+	 */
+	private static void receive (final Socket socket, final Queue<Detector> inbox) {
+		startDaemon(new Runnable() {
+			@Override
+			public void run () {
+				try {
+					DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+					while (true) {
+						inbox.offer(IslandProtocol.readDetector(in));
+					}
+				} catch (IOException e) {
+					// The neighbour has finished.
+				}
+			}
+		}, "migrations-receiver");
+	}
+
+	/*
+	 * Writes the migrants taken from the outbox into a connection,
+	 * until the neighbour closes it.
+	 */
+	private static void send (final Socket socket, final BlockingQueue<Detector> outbox) throws IOException {
+		final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		startDaemon(new Runnable() {
+			@Override
+			public void run () {
+				try {
+					while (true) {
+						IslandProtocol.writeDetector(out, outbox.take());
+						if (outbox.isEmpty()) {
+							out.flush();
+						}
+					}
+				} catch (IOException e) {
+					// The neighbour has finished.
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, "migrations-sender");
+	}
+
+	/*
+	 * Starts a daemon thread, which does not keep the worker alive
+	 * once the island finishes.
+	 */
+	private static void startDaemon (Runnable runnable, String name) {
+		Thread thread = new Thread(runnable, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+}
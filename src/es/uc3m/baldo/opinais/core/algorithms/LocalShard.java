@@ -0,0 +1,88 @@
+package es.uc3m.baldo.opinais.core.algorithms;
+
+import java.util.Collection;
+
+import es.uc3m.baldo.opinais.core.BitSlicedDataset;
+import es.uc3m.baldo.opinais.core.Individual;
+import es.uc3m.baldo.opinais.core.detectors.Detector;
+
+/**
+ * LocalShard.
+ * <p>Represents a shard whose individuals are held in memory, in
+ * their bit-sliced representation.</p>
+ * <p>It is used by the workers serving remote shards, and may be used
+ * by the master as well.</p>
+ *
+ * @author Alejandro Baldominos
+ */
+public class LocalShard implements Shard {
+
+	/*
+	 * The individuals of the shard.
+	 */
+	private BitSlicedDataset dataset;
+
+	/*
+	 * The counts of the last submitted batch.
+	 */
+	private Confusion[] counts;
+
+	/**
+	 * <p>Builds a new local shard.</p>
+	 * @param individuals the individuals of the shard.
+	 */
+	public LocalShard (Collection<Individual> individuals) {
+		this.dataset = new BitSlicedDataset(individuals);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>The detectors are counted immediately.</p>
+	 */
+	@Override
+	public void submit (Detector[] detectors) {
+		counts = new Confusion[detectors.length];
+		for (int i = 0; i < detectors.length; i++) {
+			counts[i] = count(detectors[i]);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Confusion[] collect () {
+		return counts;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close () {
+		dataset = null;
+		counts = null;
+	}
+
+	/**
+	 * <p>Calculates the confusion counts of a detector over the shard.</p>
+	 * @param detector the detector.
+	 * @return the confusion counts.
+	 */
+	public Confusion count (Detector detector) {
+		long[] matched = dataset.match(detector);
+		long[] sameType = dataset.getTypeBitmap(detector.type);
+		
+		// Lanes beyond the last individual are zeros in both bitmaps.
+		Confusion confusion = new Confusion();
+		for (int i = 0; i < matched.length; i++) {
+			long same = sameType == null? 0 : sameType[i];
+			confusion.truePositives += Long.bitCount(matched[i] & same);
+			confusion.falsePositives += Long.bitCount(matched[i] & ~same);
+			confusion.falseNegatives += Long.bitCount(~matched[i] & same);
+		}
+		confusion.trueNegatives = dataset.size() - confusion.truePositives 
+								  - confusion.falsePositives - confusion.falseNegatives;
+		return confusion;
+	}
+}
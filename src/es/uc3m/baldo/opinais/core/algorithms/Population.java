@@ -0,0 +1,451 @@
+package es.uc3m.baldo.opinais.core.algorithms;
+
+import java.util.Collection;
+import java.util.List;
+
+import es.uc3m.baldo.opinais.core.detectors.Detector;
+
+/**
+ * Population.
+ * <p>Stores a population of detectors of a fixed size across
+ * generations.</p>
+ * <p>The detectors are stored in two buffers: the current generation,
+ * and the next generation, which is filled while breeding and then 
+ * swapped with the current one. The fitness of each detector is kept
+ * in a primitive array, and the population is ranked by sorting a
+ * permutation of indices rather than the detectors themselves. Since 
+ * algorithms often only need the best detectors, they can be ranked
+ * without sorting the whole population. All
+ * these arrays are allocated once, so a population does not allocate
+ * memory across generations.</p>
+ * <p>Each position of both buffers holds a detector slot, allocated
+ * with the population and overwritten in place whenever a detector is
+ * stored there, so breeding does not leave garbage detectors behind.
+ * The bit vectors of each slot are kept rather than packing every
+ * schema in a single array per buffer, since the matching kernels and
+ * the bit-sliced dataset read the words of a detector from its own
+ * vectors. As a result, the detectors returned by a population must be
+ * copied if they are kept after the next generation is bred.</p>
+ * 
+ * @author Alejandro Baldominos
+ */
+public class Population {
+
+	/*
+	 * The current and the next generation of detectors.
+	 */
+	private Detector[] current;
+	private Detector[] next;
+	
+	/*
+	 * The fitness of each detector in the current generation.
+	 */
+	private double[] fitness;
+	
+	/*
+	 * Whether each detector of the current and the next generation
+	 * was already evaluated when it was bred.
+	 */
+	private boolean[] evaluated;
+	private boolean[] nextEvaluated;
+	
+	/*
+	 * The positions of the detectors sorted by descending fitness, 
+	 * and an auxiliary array used while sorting.
+	 */
+	private int[] order;
+	private int[] auxiliary;
+	
+	/*
+	 * A heap of ranks and a flag for each rank, used while
+	 * extracting the best detectors.
+	 */
+	private int[] heap;
+	private boolean[] selected;
+	
+	/*
+	 * The detectors sorted by descending fitness.
+	 */
+	private Detector[] ranked;
+	
+	/*
+	 * Buffer where the positions of the parents are selected.
+	 */
+	private int[] parents;
+	
+	/**
+	 * <p>Builds a new population.</p>
+	 * <p>The detectors are copied, with their fitness, into the slots
+	 * of the population, so the given ones are never modified.</p>
+	 * @param detectors the detectors of the first generation.
+	 */
+	public Population (Collection<Detector> detectors) {
+		int size = detectors.size();
+		this.current = new Detector[size];
+		this.next = new Detector[size];
+		int index = 0;
+		for (Detector detector : detectors) {
+			current[index] = detector.clone();
+			current[index].setFitness(detector.getFitness());
+			next[index] = detector.clone();
+			index++;
+		}
+		this.fitness = new double[size];
+		this.evaluated = new boolean[size];
+		this.nextEvaluated = new boolean[size];
+		this.order = new int[size];
+		this.auxiliary = new int[size];
+		this.heap = new int[size];
+		this.selected = new boolean[size];
+		this.ranked = new Detector[size];
+		this.parents = new int[0];
+		for (int i = 0; i < size; i++) {
+			fitness[i] = current[i].getFitness();
+			order[i] = i;
+			ranked[i] = current[i];
+		}
+	}
+	
+	/**
+	 * <p>Returns the number of detectors in the population.</p>
+	 * @return the size of the population.
+	 */
+	public int size () {
+		return current.length;
+	}
+	
+	/**
+	 * <p>Returns a detector of the current generation.</p>
+	 * @param index the position of the detector.
+	 * @return the detector.
+	 */
+	public Detector get (int index) {
+		return current[index];
+	}
+	
+	/**
+	 * <p>Checks whether a detector of the current generation was already
+	 * evaluated when it was bred, so its fitness need not be calculated
+	 * again.</p>
+	 * @param index the position of the detector.
+	 * @return true if the detector was evaluated when it was bred.
+	 */
+	public boolean isEvaluated (int index) {
+		return evaluated[index];
+	}
+	
+	/**
+	 * <p>Sets the fitness of a detector of the current generation.</p>
+	 * @param index the position of the detector.
+	 * @param fitness the fitness of the detector.
+	 */
+	public void setFitness (int index, double fitness) {
+		this.fitness[index] = fitness;
+		current[index].setFitness(fitness);
+	}
+	
+	/**
+	 * <p>Ranks the detectors by descending fitness.</p>
+	 * <p>The sort is stable, so detectors with the same fitness
+	 * keep their relative ranks from the last ranking (or their 
+	 * positions, if they have not been ranked yet).</p>
+	 */
+	public void rank () {
+		// Bottom-up merge sort over the permutation of positions.
+		int[] from = order;
+		int[] to = auxiliary;
+		for (int width = 1; width < from.length; width *= 2) {
+			for (int low = 0; low < from.length; low += 2 * width) {
+				merge(from, to, low, Math.min(low + width, from.length),
+					  Math.min(low + 2 * width, from.length));
+			}
+			int[] swap = from;
+			from = to;
+			to = swap;
+		}
+		order = from;
+		auxiliary = to;
+		
+		for (int i = 0; i < order.length; i++) {
+			ranked[i] = current[order[i]];
+		}
+	}
+	
+	/**
+	 * <p>Ranks only the best detectors by descending fitness.</p>
+	 * <p>The best <em>k</em> detectors are extracted with a bounded heap,
+	 * in <em>O(n log k)</em>, and placed in the first ranks, sorted and
+	 * with ties resolved as in a full ranking. The remaining detectors keep
+	 * their relative ranks from the last ranking, so they are not sorted.</p>
+	 * @param k the number of detectors to be ranked.
+	 */
+	public void rank (int k) {
+		int size = order.length;
+		k = Math.min(k, size);
+		if (k <= 0) {
+			return;
+		}
+		
+		// Keeps the best k ranks in a heap whose root is the worst of them.
+		int heapSize = select(k, false);
+		
+		// Extracts the ranks from the worst to the best.
+		for (int i = 0; i < size; i++) {
+			selected[i] = false;
+		}
+		for (int i = k - 1; i >= 0; i--) {
+			int r = heap[0];
+			heap[0] = heap[--heapSize];
+			siftDown(0, heapSize, false);
+			auxiliary[i] = order[r];
+			selected[r] = true;
+		}
+		
+		// Appends the remaining detectors in their previous order.
+		int position = k;
+		for (int r = 0; r < size; r++) {
+			if (!selected[r]) {
+				auxiliary[position++] = order[r];
+			}
+		}
+		
+		int[] swap = order;
+		order = auxiliary;
+		auxiliary = swap;
+		for (int i = 0; i < size; i++) {
+			ranked[i] = current[order[i]];
+		}
+	}
+	
+	/**
+	 * <p>Selects either the best or the worst <em>k</em> ranks in the
+	 * heap, whose root is the last of them to be ranked, i.e., the worst
+	 * of the best ranks or the best of the worst ones.</p>
+	 * @param k the number of ranks to be selected.
+	 * @param worst whether the worst ranks are selected instead of the best.
+	 * @return the number of ranks in the heap.
+	 */
+	private int select (int k, boolean worst) {
+		int heapSize = 0;
+		for (int r = 0; r < order.length; r++) {
+			if (heapSize < k) {
+				heap[heapSize++] = r;
+				siftUp(heapSize - 1, worst);
+			} else if (worst? better(heap[0], r) : better(r, heap[0])) {
+				heap[0] = r;
+				siftDown(0, heapSize, worst);
+			}
+		}
+		return heapSize;
+	}
+	
+	/**
+	 * <p>Checks whether the detector at a rank must be ranked before
+	 * the detector at another rank, i.e., whether it has a higher fitness
+	 * or the same fitness and a lower rank.</p>
+	 * @param rank1 the first rank.
+	 * @param rank2 the second rank.
+	 * @return true if the first detector goes first, false otherwise.
+	 */
+	private boolean better (int rank1, int rank2) {
+		int comparison = Double.compare(fitness[order[rank1]], fitness[order[rank2]]);
+		return comparison > 0 || (comparison == 0 && rank1 < rank2);
+	}
+	
+	/**
+	 * <p>Checks whether an element must be above another one in the
+	 * heap, i.e., whether it is ranked after it, or before it if the
+	 * heap keeps the worst ranks.</p>
+	 * @param rank1 the first rank.
+	 * @param rank2 the second rank.
+	 * @param worst whether the heap keeps the worst ranks.
+	 * @return true if the first element goes above, false otherwise.
+	 */
+	private boolean above (int rank1, int rank2, boolean worst) {
+		return worst? better(rank1, rank2) : better(rank2, rank1);
+	}
+	
+	/**
+	 * <p>Moves an element of the heap up until its parent goes above.</p>
+	 * @param i the position of the element in the heap.
+	 * @param worst whether the heap keeps the worst ranks.
+	 */
+	private void siftUp (int i, boolean worst) {
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (!above(heap[i], heap[parent], worst)) {
+				break;
+			}
+			int swap = heap[parent];
+			heap[parent] = heap[i];
+			heap[i] = swap;
+			i = parent;
+		}
+	}
+	
+	/**
+	 * <p>Moves an element of the heap down until it goes above
+	 * its children.</p>
+	 * @param i the position of the element in the heap.
+	 * @param heapSize the number of elements in the heap.
+	 * @param worst whether the heap keeps the worst ranks.
+	 */
+	private void siftDown (int i, int heapSize, boolean worst) {
+		while (true) {
+			int top = i;
+			int left = 2 * i + 1;
+			int right = left + 1;
+			if (left < heapSize && above(heap[left], heap[top], worst)) {
+				top = left;
+			}
+			if (right < heapSize && above(heap[right], heap[top], worst)) {
+				top = right;
+			}
+			if (top == i) {
+				return;
+			}
+			int swap = heap[top];
+			heap[top] = heap[i];
+			heap[i] = swap;
+			i = top;
+		}
+	}
+	
+	/**
+	 * <p>Merges two consecutive sorted runs of positions.</p>
+	 * @param from the array containing the runs.
+	 * @param to the array where the merged run is written.
+	 * @param low the start of the first run.
+	 * @param middle the start of the second run.
+	 * @param high the end of the second run.
+	 */
+	private void merge (int[] from, int[] to, int low, int middle, int high) {
+		int i = low;
+		int j = middle;
+		for (int k = low; k < high; k++) {
+			if (i < middle && (j >= high || Double.compare(fitness[from[j]], fitness[from[i]]) <= 0)) {
+				to[k] = from[i++];
+			} else {
+				to[k] = from[j++];
+			}
+		}
+	}
+	
+	/**
+	 * <p>Replaces the worst detectors of the current generation, e.g.,
+	 * with detectors migrating from another population, so that the first
+	 * detector replaces the worst one, and so on.</p>
+	 * <p>The worst detectors are found with a bounded heap, as when ranking
+	 * the best ones, and overwritten with copies of the new detectors and
+	 * their fitness. The population is not ranked again, so it must be
+	 * ranked before its best detectors are retrieved.</p>
+	 * @param detectors the new detectors. If there are more than the
+	 * population size, only the first ones are kept.
+	 */
+	public void replaceWorst (List<Detector> detectors) {
+		int count = Math.min(detectors.size(), current.length);
+		
+		// Extracts the worst ranks from the best to the worst.
+		int heapSize = select(count, true);
+		for (int i = count - 1; i >= 0; i--) {
+			int position = order[heap[0]];
+			heap[0] = heap[--heapSize];
+			siftDown(0, heapSize, true);
+			current[position].copy(detectors.get(i));
+			fitness[position] = detectors.get(i).getFitness();
+		}
+	}
+	
+	/**
+	 * <p>Returns the detector at a certain rank.</p>
+	 * @param rank the rank, where 0 is the best detector.
+	 * @return the detector at the given rank.
+	 */
+	public Detector getRanked (int rank) {
+		return ranked[rank];
+	}
+	
+	/**
+	 * <p>Returns all the detectors sorted by descending fitness, as
+	 * of the last ranking.</p>
+	 * <p>The array is returned without copying for efficiency purposes,
+	 * so it must not be modified by the caller.</p>
+	 * @return the detectors sorted by descending fitness.
+	 */
+	public Detector[] getRanked () {
+		return ranked;
+	}
+	
+	/**
+	 * <p>Returns a buffer to store the positions of the parents
+	 * selected for the next generation.</p>
+	 * @param length the number of parents.
+	 * @return the buffer, which is reused while its length does
+	 * not change.
+	 */
+	public int[] getParentsBuffer (int length) {
+		if (parents.length != length) {
+			parents = new int[length];
+		}
+		return parents;
+	}
+	
+	/**
+	 * <p>Returns the slot of a detector of the next generation, so that
+	 * it can be bred in place and then set.</p>
+	 * @param index the position of the detector.
+	 * @return the slot of the detector.
+	 */
+	public Detector getNext (int index) {
+		return next[index];
+	}
+	
+	/**
+	 * <p>Sets a detector of the next generation, which is copied
+	 * into its slot unless it is the slot itself.</p>
+	 * @param index the position of the detector.
+	 * @param detector the detector.
+	 */
+	public void setNext (int index, Detector detector) {
+		if (detector != next[index]) {
+			next[index].copy(detector);
+		}
+		nextEvaluated[index] = false;
+	}
+	
+	/**
+	 * <p>Sets a detector of the next generation which has already been
+	 * evaluated, which is copied into its slot unless it is the slot
+	 * itself.</p>
+	 * @param index the position of the detector.
+	 * @param detector the detector.
+	 * @param fitness the fitness of the detector.
+	 */
+	public void setNext (int index, Detector detector, double fitness) {
+		if (detector != next[index]) {
+			next[index].copy(detector);
+		}
+		next[index].setFitness(fitness);
+		nextEvaluated[index] = true;
+	}
+	
+	/**
+	 * <p>Replaces the current generation by the next one. The slots
+	 * of the current generation are reused for the following one.</p>
+	 * <p>The new detectors are ranked by their position until they
+	 * are evaluated and ranked again.</p>
+	 */
+	public void swap () {
+		Detector[] swap = current;
+		current = next;
+		next = swap;
+		boolean[] swapEvaluated = evaluated;
+		evaluated = nextEvaluated;
+		nextEvaluated = swapEvaluated;
+		for (int i = 0; i < current.length; i++) {
+			fitness[i] = current[i].getFitness();
+			order[i] = i;
+			ranked[i] = current[i];
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package es.uc3m.baldo.opinais.core.algorithms;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Collection;
+
+import es.uc3m.baldo.opinais.core.Individual;
+import es.uc3m.baldo.opinais.core.detectors.Detector;
+
+/**
+ * RemoteShard.
+ * <p>Represents a shard whose individuals are held by a
+ * {@link ShardWorker} process, possibly in another machine.</p>
+ * <p>The individuals are uploaded once, when the shard is connected.
+ * Then, each batch of detectors is written to the worker, which replies
+ * with the confusion counts of each detector over its individuals.</p>
+ * <p>Bit vectors and individuals are written as in the
+ * {@link IslandProtocol}.</p>
+ *
+ * @author Alejandro Baldominos
+ */
+public class RemoteShard implements Shard {
+
+	/*
+	 * Header of the protocol ("OPSH") and its version.
+	 */
+	static final int MAGIC = 0x4F505348;
+	static final int VERSION = 1;
+
+	/*
+	 * The connection to the worker.
+	 */
+	private Socket socket;
+	private DataInputStream in;
+	private DataOutputStream out;
+
+	/*
+	 * The number of detectors in the last submitted batch.
+	 */
+	private int submitted;
+
+	/**
+	 * <p>Connects to a worker and uploads the individuals of the shard.</p>
+	 * @param host the host of the worker.
+	 * @param port the port of the worker.
+	 * @param individuals the individuals of the shard.
+	 * @param featuresLength the number of features of each individual.
+	 * @throws IOException if the worker cannot be reached.
+	 */
+	public RemoteShard (String host, int port, Collection<Individual> individuals, 
+						int featuresLength) throws IOException {
+		this.socket = new Socket(host, port);
+		this.socket.setTcpNoDelay(true);
+		this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+		this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+		
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		IslandProtocol.writeIndividuals(out, individuals, featuresLength);
+		out.flush();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void submit (Detector[] detectors) throws IOException {
+		out.writeInt(detectors.length);
+		for (Detector detector : detectors) {
+			IslandProtocol.writeDetector(out, detector);
+		}
+		out.flush();
+		submitted = detectors.length;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Confusion[] collect () throws IOException {
+		Confusion[] counts = new Confusion[submitted];
+		for (int i = 0; i < submitted; i++) {
+			counts[i] = readConfusion(in);
+		}
+		return counts;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void close () {
+		try {
+			socket.close();
+		} catch (IOException e) { }
+	}
+
+	/**
+	 * <p>Writes the confusion counts of a detector.</p>
+	 * @param out the stream to the master.
+	 * @param confusion the confusion counts.
+	 * @throws IOException if the counts cannot be written.
+	 */
+	static void writeConfusion (DataOutputStream out, Confusion confusion) throws IOException {
+		out.writeLong(confusion.truePositives);
+		out.writeLong(confusion.falsePositives);
+		out.writeLong(confusion.falseNegatives);
+		out.writeLong(confusion.trueNegatives);
+	}
+
+	/**
+	 * <p>Reads the confusion counts of a detector.</p>
+	 * @param in the stream from the worker.
+	 * @return the confusion counts.
+	 * @throws IOException if the counts cannot be read.
+	 */
+	static Confusion readConfusion (DataInputStream in) throws IOException {
+		Confusion confusion = new Confusion();
+		confusion.truePositives = in.readLong();
+		confusion.falsePositives = in.readLong();
+		confusion.falseNegatives = in.readLong();
+		confusion.trueNegatives = in.readLong();
+		return confusion;
+	}
+}
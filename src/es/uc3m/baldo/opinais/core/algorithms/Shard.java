@@ -0,0 +1,39 @@
+package es.uc3m.baldo.opinais.core.algorithms;
+
+import java.io.IOException;
+
+import es.uc3m.baldo.opinais.core.detectors.Detector;
+
+/**
+ * Shard.
+ * <p>Represents a subset of the training individuals, over which the
+ * confusion counts of detectors are calculated, either locally or by a
+ * remote worker.</p>
+ * <p>A batch of detectors is first submitted and then its counts are
+ * collected, so that the master can submit a batch to all the shards
+ * before waiting for any of them, and all the shards count in parallel.</p>
+ *
+ * @author Alejandro Baldominos
+ */
+public interface Shard {
+
+	/**
+	 * <p>Submits a batch of detectors to be counted.</p>
+	 * @param detectors the detectors.
+	 * @throws IOException if the batch cannot be submitted.
+	 */
+	public void submit (Detector[] detectors) throws IOException;
+
+	/**
+	 * <p>Waits for the counts of the last submitted batch.</p>
+	 * @return the confusion counts of each detector over the shard,
+	 * in the order they were submitted.
+	 * @throws IOException if the counts cannot be collected.
+	 */
+	public Confusion[] collect () throws IOException;
+
+	/**
+	 * <p>Releases the resources held by the shard.</p>
+	 */
+	public void close ();
+}
@@ -0,0 +1,120 @@
+package es.uc3m.baldo.opinais.core.algorithms;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import es.uc3m.baldo.opinais.core.detectors.Detector;
+
+/**
+ * ShardWorker.
+ * <p>Serves a {@link RemoteShard} in its own process.</p>
+ * <p>The worker waits for a master on its port, receives the individuals
+ * of its shard and then counts each batch of detectors it receives, until
+ * the master disconnects. Several masters may be served at once.</p>
+ * <p>Usage: <em>ShardWorker port</em>.</p>
+ *
+ * @author Alejandro Baldominos
+ */
+public class ShardWorker {
+
+	/**
+	 * <p>Runs a worker.</p>
+	 * @param args the port where the worker waits for the master.
+	 * @throws IOException if the port cannot be opened.
+	 */
+	public static void main (String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("Usage: ShardWorker port");
+			System.exit(1);
+		}
+
+		ServerSocket server = new ServerSocket(Integer.parseInt(args[0]));
+		System.out.println("Waiting for the master on port " + server.getLocalPort() + "...");
+		serve(server);
+	}
+
+	/**
+	 * <p>Serves the masters connecting to a port, each in its own
+	 * thread, until the port is closed.</p>
+	 * <p>This allows running workers in the same process as the master,
+	 * e.g., to check them over <em>localhost</em>.</p>
+	 * @param server the socket where the worker waits for the masters.
+	 */
+	public static void serve (ServerSocket server) {
+		while (!server.isClosed()) {
+			final Socket master;
+			try {
+				master = server.accept();
+			} catch (IOException e) {
+				// The port has been closed.
+				return;
+			}
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run () {
+					try {
+						serve(master);
+					} catch (IOException e) {
+						e.printStackTrace();
+					} finally {
+						try {
+							master.close();
+						} catch (IOException e) { }
+					}
+				}
+			}, "shard-master");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/*
+	 * Serves a master until it disconnects.
+	 */
+	private static void serve (Socket master) throws IOException {
+		master.setTcpNoDelay(true);
+		DataInputStream in = new DataInputStream(new BufferedInputStream(master.getInputStream()));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(master.getOutputStream()));
+
+		if (in.readInt() != RemoteShard.MAGIC) {
+			throw new IOException("Not a master");
+		}
+		int version = in.readInt();
+		if (version != RemoteShard.VERSION) {
+			throw new IOException("Unsupported protocol version: " + version);
+		}
+		
+		LocalShard shard = new LocalShard(IslandProtocol.readIndividuals(in));
+		System.out.println("Serving a shard to " + master.getRemoteSocketAddress() + ".");
+		
+		while (true) {
+			int size;
+			try {
+				size = in.readInt();
+			} catch (EOFException e) {
+				// The master has disconnected.
+				break;
+			}
+			
+			// Reads the whole batch before replying, so that the master
+			// never blocks writing while the worker blocks replying.
+			Detector[] detectors = new Detector[size];
+			for (int i = 0; i < size; i++) {
+				detectors[i] = IslandProtocol.readDetector(in);
+			}
+			shard.submit(detectors);
+			for (Confusion confusion : shard.collect()) {
+				RemoteShard.writeConfusion(out, confusion);
+			}
+			out.flush();
+		}
+		
+		shard.close();
+	}
+}
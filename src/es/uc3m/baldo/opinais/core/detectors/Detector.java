@@ -2,7 +2,8 @@ package es.uc3m.baldo.opinais.core.detectors;
 
 import java.util.Arrays;
 
-import es.uc3m.baldo.opinais.core.Bit;
+import es.uc3m.baldo.opinais.core.BitSlicedDataset;
+import es.uc3m.baldo.opinais.core.BitVector;
 import es.uc3m.baldo.opinais.core.Individual;
 import es.uc3m.baldo.opinais.core.types.Type;
 
@@ -27,19 +28,59 @@ public class Detector implements Comparable<Detector>, Cloneable {
 	/*
 	 *  Threshold, represented in Gray code.
 	 */
-	public Bit[] threshold;
+	public BitVector threshold;
 	public double decodedThreshold;
 	
 	/*
 	 *  Detector schema, represented as pattern and mask.
 	 */
-	public Bit[] pattern;
-	public Bit[] mask;
+	public BitVector pattern;
+	public BitVector mask;
+	
+	/*
+	 *  Kernel used to count the bit matches, shared by all detectors.
+	 *  It is volatile so that the threads evaluating detectors see the
+	 *  kernel set when loading the configuration.
+	 */
+	private static volatile MatchKernel kernel = MatchKernelFactory.makeKernel();
+	
+	/*
+	 *  Positions which are not wildcards (i.e., the negated mask),
+	 *  and the number of such positions, precomputed for matching.
+	 */
+	private long[] care;
+	private int comparisons;
+	
+	/*
+	 *  Number of comparisons in the words following each word of
+	 *  the schema, used to stop matching as soon as the result is known.
+	 */
+	private int[] remaining;
+	
+	/*
+	 *  Minimum number of matches so that the matching ratio reaches
+	 *  and exceeds the threshold, respectively.
+	 */
+	private int minimumMatches;
+	private int minimumValidMatches;
 	
 	/*
 	 *  Fitness
 	 */
 	private double fitness;
+	
+	/*
+	 *  Genome of the detector, built with its hash once the schema
+	 *  and the threshold are known, and updated when they change.
+	 */
+	private Genome genome;
+	
+	/*
+	 *  Genome of the detector this one was copied from (before
+	 *  being mutated), or null if it was created otherwise. It follows
+	 *  the parent, so it is only valid while the parent is not overwritten.
+	 */
+	private Genome parentGenome;
 
 	/**
 	 * <p>Builds a new Detector instance.</p>
@@ -52,16 +93,61 @@ public class Detector implements Comparable<Detector>, Cloneable {
 	 * @param mask an array of bits, containing a 1 in those positions
 	 * which are considered as wildcards.
 	 */
-	public Detector (Type type, Bit[] threshold, Bit[] pattern, Bit[] mask) {
+	public Detector (Type type, BitVector threshold, BitVector pattern, BitVector mask) {
 		this.type = type;
 		this.threshold = threshold;
 		this.decodedThreshold = decodeThreshold();
 		this.pattern = pattern;
 		this.mask = mask;
+		precomputeCare();
+		precomputeMinimums();
 	}
 		
+	/**
+	 * <p>Sets the kernel used by all detectors to count the bit matches.</p>
+	 * @param kernel the matching kernel.
+	 */
+	public static void setMatchKernel (MatchKernel kernel) {
+		Detector.kernel = kernel;
+	}
+	
+	/**
+	 * <p>Overwrites this detector with a copy of another one, including
+	 * its fitness, reusing the bit vectors and the precomputed arrays.</p>
+	 * <p>Both detectors must have the same schema length. The copy is not
+	 * considered to be copied from the source, so it has no parent genome.</p>
+	 * @param source the detector to be copied.
+	 */
+	public void copy (Detector source) {
+		this.type = source.type;
+		this.threshold.copy(source.threshold);
+		this.decodedThreshold = source.decodedThreshold;
+		this.pattern.copy(source.pattern);
+		this.mask.copy(source.mask);
+		System.arraycopy(source.care, 0, care, 0, care.length);
+		System.arraycopy(source.remaining, 0, remaining, 0, remaining.length);
+		this.comparisons = source.comparisons;
+		this.minimumMatches = source.minimumMatches;
+		this.minimumValidMatches = source.minimumValidMatches;
+		this.fitness = source.fitness;
+		this.parentGenome = null;
+		genome.set(this);
+	}
+	
+	/**
+	 * <p>Updates the decoded threshold and the precomputed arrays after
+	 * the bit vectors of the detector have been modified in place, e.g.,
+	 * while breeding it.</p>
+	 */
+	public void rebuild () {
+		this.decodedThreshold = decodeThreshold();
+		precomputeCare();
+		precomputeMinimums();
+	}
+	
 	public void setDecodedThreshold (double thr) {
 		this.decodedThreshold = thr;
+		precomputeMinimums();
 	}
 	
 	/**
@@ -73,41 +159,173 @@ public class Detector implements Comparable<Detector>, Cloneable {
 	 * false otherwise.
 	 */
 	public double match (Individual individual) {
-		// Stores the number of bit matches.
-		int matches = 0;
-		
-		// Stores the total number of comparisons.
-		int comparisons = 0;
-		
-		// Checks the schema and individual bit-by-bit.
-		for (int i = 0; i < pattern.length; i++) {
-			if (mask[i] == Bit.ZERO) {
-				if (pattern[i] == individual.bits[i]) {
-					matches++;
-				}
-				comparisons++;			
-			}
-		}
+		// Checks the schema and individual word-by-word. A bit matches
+		// when it is equal in both the pattern and the individual and
+		// it is not a wildcard.
+		int matches = kernel.countMatches(pattern.getWords(), care, individual.bits.getWords());
 				
 		double matchPct = (double) matches/comparisons;
 		return matchPct;
 	}
 
-	private double decodeThreshold () {
-		Bit[] binary = new Bit[threshold.length];
-		binary[0] = threshold[0];
-		for (int i = 1; i < binary.length; i++) {
-			binary[i] = threshold[i].xor(binary[i-1]);
+	/**
+	 * <p>Checks whether the matching ratio with an individual reaches
+	 * the threshold, without calculating its exact value.</p>
+	 * <p>The schema is scanned word-by-word, and the scan stops as soon
+	 * as enough matches are found to reach the threshold, or the remaining
+	 * positions cannot reach it. Detectors with thresholds near 0 or 1 
+	 * usually skip most of the schema.</p>
+	 * @param individual the individual which is tried to be matched.
+	 * @return true if the matching ratio is equal or greater than the
+	 * threshold, false otherwise.
+	 */
+	public boolean matchesAtLeast (Individual individual) {
+		return reaches(individual, minimumMatches);
+	}
+	
+	/**
+	 * <p>Checks whether the matching ratio with an individual is valid,
+	 * i.e., strictly greater than the threshold, without calculating
+	 * its exact value.</p>
+	 * @param individual the individual which is tried to be matched.
+	 * @return true if the matching ratio exceeds the threshold, 
+	 * false otherwise.
+	 * @see #matchesAtLeast(Individual)
+	 */
+	public boolean matchesAbove (Individual individual) {
+		return reaches(individual, minimumValidMatches);
+	}
+	
+	/**
+	 * <p>Checks whether the number of bit matches with an individual
+	 * reaches a minimum, stopping as soon as the result is known.</p>
+	 * @param individual the individual which is tried to be matched.
+	 * @param minimum the minimum number of matches.
+	 * @return true if the number of matches reaches the minimum,
+	 * false otherwise.
+	 */
+	private boolean reaches (Individual individual, int minimum) {
+		if (minimum > comparisons) {
+			return false;
+		}
+		if (minimum <= 0) {
+			return true;
+		}
+		
+		long[] patternWords = pattern.getWords();
+		long[] bits = individual.bits.getWords();
+		int matches = 0;
+		for (int i = 0; i < care.length; i++) {
+			matches += Long.bitCount(~(patternWords[i] ^ bits[i]) & care[i]);
+			if (matches >= minimum) {
+				return true;
+			}
+			if (matches + remaining[i] < minimum) {
+				return false;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * <p>Precomputes the positions of the schema which are not wildcards,
+	 * as well as the total number of comparisons performed when matching.</p>
+	 * <p>The bits beyond the schema length are cleared, so that
+	 * they are never counted as matches. The arrays are reused if
+	 * the schema length has not changed.</p>
+	 */
+	private void precomputeCare () {
+		long[] maskWords = mask.getWords();
+		if (care == null || care.length != maskWords.length) {
+			care = new long[maskWords.length];
+			remaining = new int[maskWords.length];
 		}
+		comparisons = 0;
+		for (int i = 0; i < care.length; i++) {
+			care[i] = ~maskWords[i];
+		}
+		if (care.length > 0) {
+			care[care.length - 1] &= BitVector.lastWordMask(mask.length());
+		}
+		for (long word : care) {
+			comparisons += Long.bitCount(word);
+		}
+		if (remaining.length > 0) {
+			remaining[remaining.length - 1] = 0;
+		}
+		for (int i = care.length - 2; i >= 0; i--) {
+			remaining[i] = remaining[i+1] + Long.bitCount(care[i+1]);
+		}
+	}
+	
+	/**
+	 * <p>Precomputes the minimum number of matches so that the
+	 * matching ratio reaches and exceeds the threshold, as well as
+	 * the genome, which also depends on the threshold.</p>
+	 */
+	private void precomputeMinimums () {
+		minimumMatches = BitSlicedDataset.minimumMatches(comparisons, decodedThreshold);
+		minimumValidMatches = BitSlicedDataset.minimumValidMatches(comparisons, decodedThreshold);
+		if (genome == null) {
+			genome = new Genome(this);
+		} else {
+			genome.set(this);
+		}
+	}
 
+	private double decodeThreshold () {
+		// Each binary bit is the Gray bit xor the previous binary bit,
+		// and the first bit is the most significant one.
+		boolean bit = false;
 		double number = 0;
-		for (int i = threshold.length-1; i >= 0; i--) {
-			number += binary[i] == Bit.ONE? Math.pow(2, threshold.length - i - 1) : 0;
-		}		
+		for (int i = 0; i < threshold.length(); i++) {
+			bit ^= threshold.isSet(i);
+			number = 2 * number + (bit? 1 : 0);
+		}
 
 		return number / 255;
 	}
 	
+	/**
+	 * <p>Returns the genome of the detector, which identifies
+	 * its matching behavior regardless of its fitness.</p>
+	 * <p>The genome is returned without being copied, and it
+	 * changes if the detector is overwritten, so it must be
+	 * {@link Genome#copy() copied} to be kept.</p>
+	 * @return the genome of the detector.
+	 */
+	public Genome getGenome () {
+		return genome;
+	}
+	
+	/**
+	 * <p>Returns the number of positions in the schema which are not 
+	 * wildcards, i.e., the number of comparisons performed when matching.</p>
+	 * @return the number of comparisons.
+	 */
+	public int getComparisons () {
+		return comparisons;
+	}
+	
+	/**
+	 * <p>Returns the genome of the detector this one was copied from.</p>
+	 * <p>Evaluations may use it to derive the matches of this detector from
+	 * those of its parent.</p>
+	 * @return the genome of the parent, or null if this detector
+	 * was not copied from another one.
+	 */
+	public Genome getParentGenome () {
+		return parentGenome;
+	}
+	
+	/**
+	 * <p>Sets the genome of the detector this one was copied from.</p>
+	 * @param parentGenome the genome of the parent.
+	 */
+	public void setParentGenome (Genome parentGenome) {
+		this.parentGenome = parentGenome;
+	}
+	
 	public void setFitness (double fitness) {
 		this.fitness = fitness;
 	}
@@ -142,11 +360,11 @@ public class Detector implements Comparable<Detector>, Cloneable {
 		if (Double.doubleToLongBits(fitness) != Double
 				.doubleToLongBits(other.fitness))
 			return false;
-		if (!Arrays.equals(mask, other.mask))
+		if (!mask.equals(other.mask))
 			return false;
-		if (!Arrays.equals(pattern, other.pattern))
+		if (!pattern.equals(other.pattern))
 			return false;
-		if (!Arrays.equals(threshold, other.threshold))
+		if (!threshold.equals(other.threshold))
 			return false;
 		if (type != other.type)
 			return false;
@@ -165,9 +383,9 @@ public class Detector implements Comparable<Detector>, Cloneable {
 		result = prime * result + (int) (temp ^ (temp >>> 32));
 		temp = Double.doubleToLongBits(fitness);
 		result = prime * result + (int) (temp ^ (temp >>> 32));
-		result = prime * result + Arrays.hashCode(mask);
-		result = prime * result + Arrays.hashCode(pattern);
-		result = prime * result + Arrays.hashCode(threshold);
+		result = prime * result + mask.hashCode();
+		result = prime * result + pattern.hashCode();
+		result = prime * result + threshold.hashCode();
 		result = prime * result + ((type == null) ? 0 : type.hashCode());
 		return result;
 	}
@@ -177,9 +395,9 @@ public class Detector implements Comparable<Detector>, Cloneable {
 	 */
 	@Override
 	public String toString() {
-		char[] schema = new char[pattern.length];
+		char[] schema = new char[pattern.length()];
 		for (int i = 0; i < schema.length; i++) {
-			schema[i] = mask[i] == Bit.ONE? '#' : pattern[i].toString().charAt(0);
+			schema[i] = mask.isSet(i)? '#' : pattern.get(i).toString().charAt(0);
 		}
 		return "Detector [type=" + type + ", threshold="
 				+ decodedThreshold + ", schema=" + Arrays.toString(schema)
@@ -192,10 +410,10 @@ public class Detector implements Comparable<Detector>, Cloneable {
 	 */
 	@Override
 	public Detector clone () {
-		// Clones the bit arrays.
-		Bit[] threshold = this.threshold.clone();
-		Bit[] pattern = this.pattern.clone();
-		Bit[] mask = this.mask.clone();
+		// Clones the bit vectors.
+		BitVector threshold = this.threshold.clone();
+		BitVector pattern = this.pattern.clone();
+		BitVector mask = this.mask.clone();
 		
 		return new Detector(type, threshold, pattern, mask);
 	}
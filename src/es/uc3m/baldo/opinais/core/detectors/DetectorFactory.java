@@ -1,6 +1,10 @@
 package es.uc3m.baldo.opinais.core.detectors;
 
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
 import es.uc3m.baldo.opinais.core.Bit;
+import es.uc3m.baldo.opinais.core.BitVector;
 import es.uc3m.baldo.opinais.core.types.Type;
 
 /**
@@ -25,25 +29,36 @@ public class DetectorFactory {
 	 * @return a new randomly generated detector.
 	 */
 	public static Detector makeDetector (int length, double typeBias, double generalityBias) {
+		return makeDetector(length, typeBias, generalityBias, ThreadLocalRandom.current());
+	}
+	
+	/**
+	 * <p>Makes a new random detector object.</p>
+	 * @param length the length of the detector schema.
+	 * @param typeBias the probability that the detector is a Self detector.
+	 * @param generalityBias the probability that the next Bit is a wildcard.
+	 * @param random the random generator.
+	 * @return a new randomly generated detector.
+	 */
+	public static Detector makeDetector (int length, double typeBias, double generalityBias, Random random) {
 		// Extracts the detector type.
-		int random = (int) (Math.random() * Type.values().length);
-		Type type = Type.values()[random];
+		Type type = Type.values()[random.nextInt(Type.values().length)];
 		
 		// Generates the threshold, represented
 		// as an 8-bit string in Gray encoding.
-		Bit[] threshold = new Bit[8];
-		for (int i = 0; i < threshold.length; i++) {
-			threshold[i] = Math.random() < 0.5? Bit.ZERO : Bit.ONE;
+		BitVector threshold = new BitVector(8);
+		for (int i = 0; i < threshold.length(); i++) {
+			threshold.set(i, random.nextDouble() < 0.5? Bit.ZERO : Bit.ONE);
 		}
 		
 		// Generates the schema bit-by-bit, represented
 		// as a combination of a pattern and a mask.
-		Bit[] pattern = new Bit[length];
-		Bit[] mask = new Bit[length];
+		BitVector pattern = new BitVector(length);
+		BitVector mask = new BitVector(length);
 		for (int i = 0; i < length; i++) {
 			// Extracts the next bit in the schema.
-			pattern[i] = Math.random() < 0.5? Bit.ZERO : Bit.ONE;
-			mask[i] =  (Math.random() < generalityBias)? Bit.ONE : Bit.ZERO;
+			pattern.set(i, random.nextDouble() < 0.5? Bit.ZERO : Bit.ONE);
+			mask.set(i, (random.nextDouble() < generalityBias)? Bit.ONE : Bit.ZERO);
 		}
 		
 		return new Detector(type, threshold, pattern, mask);
@@ -0,0 +1,180 @@
+package es.uc3m.baldo.opinais.core.detectors;
+
+import es.uc3m.baldo.opinais.core.BitVector;
+import es.uc3m.baldo.opinais.core.types.Type;
+
+/**
+ * Genome.
+ * <p>Represents the genetic information of a detector, i.e.,
+ * everything which determines how it matches individuals: its type,
+ * its threshold and its schema.</p>
+ * <p>Unlike a detector, a genome does not include the fitness, so
+ * two detectors with the same genome are known to have the same
+ * fitness over the same set of individuals.</p>
+ * <p>A genome references the schema of its detector rather than copying
+ * it, and follows the detector when it is overwritten (e.g., when a
+ * population reuses it for another detector), so looking up a detector
+ * in a cache allocates nothing. Caches must therefore be keyed on
+ * {@link #copy() copies} of the genomes, which never change.</p>
+ * 
+ * @author Alejandro Baldominos
+ */
+public class Genome {
+
+	/*
+	 *  Detector type.
+	 */
+	private Type type;
+	
+	/*
+	 *  Decoded threshold.
+	 */
+	private double threshold;
+	
+	/*
+	 *  Detector schema, represented as pattern and mask.
+	 */
+	private BitVector pattern;
+	private BitVector mask;
+	
+	/*
+	 *  Precomputed hash.
+	 */
+	private int hash;
+	
+	/**
+	 * <p>Builds the genome of a detector.</p>
+	 * @param detector the detector.
+	 */
+	public Genome (Detector detector) {
+		set(detector);
+	}
+	
+	/*
+	 * Builds a copy of a genome.
+	 */
+	private Genome (Genome genome) {
+		this.type = genome.type;
+		this.threshold = genome.threshold;
+		this.pattern = genome.pattern.clone();
+		this.mask = genome.mask.clone();
+		this.hash = genome.hash;
+	}
+	
+	/**
+	 * <p>Updates the genome after its detector has changed, computing
+	 * the hash again.</p>
+	 * @param detector the detector.
+	 */
+	void set (Detector detector) {
+		this.type = detector.type;
+		this.threshold = detector.decodedThreshold;
+		this.pattern = detector.pattern;
+		this.mask = detector.mask;
+		
+		final int prime = 31;
+		int result = 1;
+		long temp = Double.doubleToLongBits(threshold);
+		result = prime * result + (int) (temp ^ (temp >>> 32));
+		result = prime * result + mask.hashCode();
+		result = prime * result + pattern.hashCode();
+		result = prime * result + ((type == null) ? 0 : type.hashCode());
+		this.hash = result;
+	}
+	
+	/**
+	 * <p>Returns a copy of the genome which does not follow its detector,
+	 * e.g., to be used as the key of a cache.</p>
+	 * @return a copy of the genome.
+	 */
+	public Genome copy () {
+		return new Genome(this);
+	}
+	
+	/**
+	 * <p>Returns the detector type.</p>
+	 * @return the detector type.
+	 */
+	public Type getType () {
+		return type;
+	}
+	
+	/**
+	 * <p>Returns the decoded threshold.</p>
+	 * @return the decoded threshold.
+	 */
+	public double getThreshold () {
+		return threshold;
+	}
+	
+	/**
+	 * <p>Returns the pattern of the schema.</p>
+	 * <p>The vector must not be modified by the caller.</p>
+	 * @return the pattern.
+	 */
+	public BitVector getPattern () {
+		return pattern;
+	}
+	
+	/**
+	 * <p>Returns the mask of the schema.</p>
+	 * <p>The vector must not be modified by the caller.</p>
+	 * @return the mask.
+	 */
+	public BitVector getMask () {
+		return mask;
+	}
+	
+	/**
+	 * <p>Counts the positions where the schema of a detector differs
+	 * from this genome, either in the pattern or in the mask.</p>
+	 * @param detector a detector with the same schema length.
+	 * @return the number of positions which differ.
+	 */
+	public int distance (Detector detector) {
+		long[] pattern = this.pattern.getWords();
+		long[] mask = this.mask.getWords();
+		long[] otherPattern = detector.pattern.getWords();
+		long[] otherMask = detector.mask.getWords();
+		
+		int distance = 0;
+		for (int i = 0; i < mask.length; i++) {
+			distance += Long.bitCount((pattern[i] ^ otherPattern[i]) | (mask[i] ^ otherMask[i]));
+		}
+		return distance;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean equals (Object obj) {
+		if (this == obj)
+			return true;
+		if (obj == null)
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		Genome other = (Genome) obj;
+		if (hash != other.hash)
+			return false;
+		if (Double.doubleToLongBits(threshold) != Double
+				.doubleToLongBits(other.threshold))
+			return false;
+		if (type != other.type)
+			return false;
+		if (!mask.equals(other.mask))
+			return false;
+		if (!pattern.equals(other.pattern))
+			return false;
+		return true;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int hashCode () {
+		return hash;
+	}
+}
@@ -0,0 +1,26 @@
+package es.uc3m.baldo.opinais.core.detectors;
+
+/**
+ * MatchKernel.
+ * <p>Counts the number of matching bits between a detector
+ * schema and an individual, both packed into 64-bit words.</p>
+ * <p>All matching kernels must implement this interface, so that
+ * the matching backend can be replaced without modifying the
+ * detectors or the algorithms.</p>
+ * 
+ * @author Alejandro Baldominos
+ */
+public interface MatchKernel {
+
+	/**
+	 * <p>Counts the number of positions where the pattern and the
+	 * individual have the same bit, ignoring the wildcards.</p>
+	 * @param pattern the packed detector pattern.
+	 * @param care the packed non-wildcard positions of the detector
+	 * (i.e., the negated mask, with the bits beyond the schema length
+	 * set to zero).
+	 * @param bits the packed individual features vector.
+	 * @return the number of bit matches.
+	 */
+	public int countMatches (long[] pattern, long[] care, long[] bits);
+}
@@ -0,0 +1,40 @@
+package es.uc3m.baldo.opinais.core.detectors;
+
+/**
+ * MatchKernelFactory.
+ * <p>Makes the matching kernel used by the detectors.</p>
+ * <p>Kernels are loaded by name, so that a kernel depending on
+ * optional platform features may be configured without breaking
+ * the application when those features are not available. In such
+ * a case, the scalar kernel is used instead.</p>
+ * 
+ * @author Alejandro Baldominos
+ */
+public class MatchKernelFactory {
+
+	/**
+	 * <p>Makes the default matching kernel.</p>
+	 * @return the default matching kernel.
+	 */
+	public static MatchKernel makeKernel () {
+		return new UnrolledMatchKernel();
+	}
+	
+	/**
+	 * <p>Makes a matching kernel given its name.</p>
+	 * <p>If the kernel cannot be loaded (e.g., because it
+	 * requires some module which is not present in the running
+	 * platform), the scalar kernel is returned instead.</p>
+	 * @param name the name of the kernel class
+	 * (must be located in es.uc3m.baldo.opinais.core.detectors).
+	 * @return the matching kernel.
+	 */
+	public static MatchKernel makeKernel (String name) {
+		try {
+			return (MatchKernel) Class.forName("es.uc3m.baldo.opinais.core.detectors." + name).newInstance();
+		} catch (Exception | LinkageError e) {
+			System.err.println("Matching kernel " + name + " is not available, falling back to the scalar kernel.");
+			return new ScalarMatchKernel();
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package es.uc3m.baldo.opinais.core.detectors;
+
+/**
+ * ScalarMatchKernel.
+ * <p>Counts the matching bits one word at a time.</p>
+ * <p>This is the simplest kernel, and it is used as the fallback
+ * whenever the configured kernel cannot be loaded.</p>
+ * 
+ * @author Alejandro Baldominos
+ */
+public class ScalarMatchKernel implements MatchKernel {
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int countMatches (long[] pattern, long[] care, long[] bits) {
+		int matches = 0;
+		for (int i = 0; i < care.length; i++) {
+			matches += Long.bitCount(~(pattern[i] ^ bits[i]) & care[i]);
+		}
+		return matches;
+	}
+}
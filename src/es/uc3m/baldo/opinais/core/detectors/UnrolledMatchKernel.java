@@ -0,0 +1,49 @@
+package es.uc3m.baldo.opinais.core.detectors;
+
+/**
+ * UnrolledMatchKernel.
+ * <p>Counts the matching bits four words at a time.</p>
+ * <p>Each of the four lanes keeps its own accumulator, so that
+ * the XOR, mask and population count of consecutive words do not
+ * depend on each other and can be issued in parallel by the
+ * processor. The remaining words are processed one at a time.</p>
+ * <p>This is the default kernel.</p>
+ * 
+ * @author Alejandro Baldominos
+ */
+public class UnrolledMatchKernel implements MatchKernel {
+
+	/*
+	 * Number of words processed per iteration.
+	 */
+	private static final int LANES = 4;
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int countMatches (long[] pattern, long[] care, long[] bits) {
+		// Stores the partial number of matches for each lane.
+		int matches0 = 0;
+		int matches1 = 0;
+		int matches2 = 0;
+		int matches3 = 0;
+		
+		// Processes blocks of four words.
+		int bound = care.length - care.length % LANES;
+		int i = 0;
+		for (; i < bound; i += LANES) {
+			matches0 += Long.bitCount(~(pattern[i] ^ bits[i]) & care[i]);
+			matches1 += Long.bitCount(~(pattern[i+1] ^ bits[i+1]) & care[i+1]);
+			matches2 += Long.bitCount(~(pattern[i+2] ^ bits[i+2]) & care[i+2]);
+			matches3 += Long.bitCount(~(pattern[i+3] ^ bits[i+3]) & care[i+3]);
+		}
+		
+		// Processes the remaining words.
+		for (; i < care.length; i++) {
+			matches0 += Long.bitCount(~(pattern[i] ^ bits[i]) & care[i]);
+		}
+		
+		return matches0 + matches1 + matches2 + matches3;
+	}
+}
@@ -3,7 +3,8 @@
  * entities (simulating the antibodies in natural immune
  * systems) which detects individuals of a certain type.</p>
  * <p>This package also includes a class for generating random
- * detectors.</p>
+ * detectors, as well as the kernels which count the bit matches
+ * between a detector and an individual.</p>
  * 
  * @author Alejandro Baldominos
  */
@@ -1,8 +1,10 @@
 package es.uc3m.baldo.opinais.core.operators;
 
-import es.uc3m.baldo.opinais.core.Bit;
+import java.util.Random;
+
+import es.uc3m.baldo.opinais.core.BitVector;
 import es.uc3m.baldo.opinais.core.detectors.Detector;
-import es.uc3m.baldo.opinais.core.types.Type;
+import es.uc3m.baldo.opinais.core.random.SplitMixRandom;
 
 /**
  * CrossoverOperator
@@ -11,6 +13,10 @@ import es.uc3m.baldo.opinais.core.types.Type;
  * <p>In uniform crossover, each bit in the child
  * detector is randomly selected between the bits
  * located in the same position for their parents.</p>
+ * <p>Bits are crossed 64 at a time, using a random word
+ * to decide which parent provides each bit of the child.
+ * The child may be written into an existing detector, so
+ * that breeding does not allocate new ones.</p>
  * 
  * @author Alejandro Baldominos
  *
@@ -23,12 +29,28 @@ public class CrossoverOperator {
 	 */
 	private double crossoverRate;
 	
+	/*
+	 *  Random generator.
+	 */
+	private Random random;
+	
 	/**
 	 * <p>Builds a new crossover operator.</p>
 	 * @param crossoverRate the crossover rate.
 	 */
 	public CrossoverOperator (double crossoverRate) {
+		this(crossoverRate, new SplitMixRandom());
+	}
+	
+	/**
+	 * <p>Builds a new crossover operator.</p>
+	 * @param crossoverRate the crossover rate.
+	 * @param random the random generator, which must not be shared 
+	 * with other threads.
+	 */
+	public CrossoverOperator (double crossoverRate, Random random) {
 		this.crossoverRate = crossoverRate;
+		this.random = random;
 	}
 	
 	/**
@@ -38,40 +60,58 @@ public class CrossoverOperator {
 	 * @return the child detector.
 	 */
 	public Detector crossover (Detector detector1, Detector detector2) {
+		Detector child = detector1.clone();
+		crossover(detector1, detector2, child);
+		return child;
+	}
+	
+	/**
+	 * <p>Writes a child of the two parents into an existing detector,
+	 * reusing its bit vectors.</p>
+	 * @param detector1 the first parent.
+	 * @param detector2 the second parent.
+	 * @param child the detector where the child is written, which must
+	 * have the same schema length as its parents, and must not be any
+	 * of them.
+	 */
+	public void crossover (Detector detector1, Detector detector2, Detector child) {
 		// Checks whether crossover is actually performed.
 		// If crossover were not performed, then one of the
-		// parents were randomly returned.
-		if (Math.random() < crossoverRate) {
+		// parents were randomly copied.
+		if (random.nextDouble() < crossoverRate) {
 			// Actually, both detectors must have the same type.
-			Type type = detector1.type;
-			
-			// Stores the features for the new detector.
-			Bit[] threshold = new Bit[detector1.threshold.length];
-			Bit[] pattern = new Bit[detector1.pattern.length];
-			Bit[] mask = new Bit[detector1.pattern.length];
-			
-			// Crosses the threshold.
-			for (int i = 0; i < threshold.length; i++) {
-				Detector parent = Math.random() < 0.5? detector1 : detector2;
-				threshold[i] = parent.threshold[i];
-			}
-			
-			// Crosses the pattern.
-			for (int i = 0; i < pattern.length; i++) {
-				Detector parent = Math.random() < 0.5? detector1 : detector2;
-				pattern[i] = parent.pattern[i];
-			}
+			child.type = detector1.type;
 			
-			// Crosses the mask.
-			for (int i = 0; i < mask.length; i++) {
-				Detector parent = Math.random() < 0.5? detector1 : detector2;
-				mask[i] = parent.mask[i];
-			}
-			
-			return new Detector(type, threshold, pattern, mask);
+			// Crosses the threshold, the pattern and the mask.
+			cross(detector1.threshold, detector2.threshold, child.threshold);
+			cross(detector1.pattern, detector2.pattern, child.pattern);
+			cross(detector1.mask, detector2.mask, child.mask);
+			child.rebuild();
+			child.setParentGenome(null);
 		} else {
-			// One of the two parents is returned randomly (crossover not performed).
-			return Math.random() < 0.5? detector1.clone() : detector2.clone();
+			// One of the two parents is copied randomly (crossover not performed).
+			// The child keeps track of its parent, so that it may be evaluated
+			// incrementally after being mutated.
+			Detector parent = random.nextDouble() < 0.5? detector1 : detector2;
+			child.copy(parent);
+			child.setParentGenome(parent.getGenome());
+		}
+	}
+	
+	/**
+	 * <p>Crosses two bit vectors of the same length, taking each bit
+	 * from either vector with the same probability.</p>
+	 * @param vector1 the first vector.
+	 * @param vector2 the second vector.
+	 * @param child the vector where the crossed bits are written.
+	 */
+	private void cross (BitVector vector1, BitVector vector2, BitVector child) {
+		long[] words1 = vector1.getWords();
+		long[] words2 = vector2.getWords();
+		for (int i = 0; i < words1.length; i++) {
+			// Each 1 in the choice takes the bit from the first vector.
+			long choice = random.nextLong();
+			child.setWord(i, (words1[i] & choice) | (words2[i] & ~choice));
 		}
 	}
 }
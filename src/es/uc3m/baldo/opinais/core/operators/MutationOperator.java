@@ -1,13 +1,19 @@
 package es.uc3m.baldo.opinais.core.operators;
 
-import es.uc3m.baldo.opinais.core.Bit;
+import java.util.Random;
+
 import es.uc3m.baldo.opinais.core.detectors.Detector;
-import es.uc3m.baldo.opinais.core.types.Type;
+import es.uc3m.baldo.opinais.core.random.SplitMixRandom;
 
 /**
  * Mutation
  * <p>Performs mutation by bit-flipping over
  * a detector.</p>
+ * <p>Rather than drawing a random number for each bit,
+ * the distance to the next flipped bit is drawn from a 
+ * geometric distribution, so only about <em>rate * length</em>
+ * random numbers are drawn per detector. The result follows
+ * the same distribution as flipping each bit independently.</p>
  * 
  * @author Alejandro Baldominos
  *
@@ -18,57 +24,96 @@ public class MutationOperator {
 	 *  Mutation rate.
 	 */
 	private double mutationRate;
+	
+	/*
+	 *  Logarithm of the probability that a bit is not mutated,
+	 *  used to draw the distance between mutated bits.
+	 */
+	private double logKeepRate;
+	
+	/*
+	 *  Random generator.
+	 */
+	private Random random;
 
 	/**
 	 * <p>Builds a new mutation operator.</p>
 	 * @param mutationRate the mutation rate.
 	 */
 	public MutationOperator (double mutationRate) {
+		this(mutationRate, new SplitMixRandom());
+	}
+	
+	/**
+	 * <p>Builds a new mutation operator.</p>
+	 * @param mutationRate the mutation rate.
+	 * @param random the random generator, which must not be shared 
+	 * with other threads.
+	 */
+	public MutationOperator (double mutationRate, Random random) {
 		this.mutationRate = mutationRate;
+		this.logKeepRate = Math.log(1 - mutationRate);
+		this.random = random;
 	}
 	
 	/**
-	 * <p>Returns a mutated version of the detector, based 
-	 * on random bit-flipping for each bit.</p>
+	 * <p>Mutates the detector in place, based on random
+	 * bit-flipping for each bit.</p>
+	 * <p>The bits are flipped in the bit vectors of the detector,
+	 * and only if some bit is mutated the detector is rebuilt.
+	 * The mutated detector keeps its parent genome, since it still
+	 * descends from the same parent.</p>
 	 * @param detector the detector to be mutated.
-	 * @return the mutated detector.
+	 * @return the same detector, once mutated.
 	 */
 	public Detector mutate (Detector detector) {
-		// Actually, both detectors must have the same type.
-		Type type = detector.type;
+		// The threshold, the pattern and the mask are mutated as if they
+		// were a single vector, so that the skipped distance carries over.
+		int thresholdLength = detector.threshold.length();
+		int patternLength = detector.pattern.length();
+		int totalLength = thresholdLength + patternLength + detector.mask.length();
 		
-		// Stores the features for the new detector.
-		Bit[] threshold = new Bit[detector.threshold.length];
-		Bit[] pattern = new Bit[detector.pattern.length];
-		Bit[] mask = new Bit[detector.pattern.length];
+		int position = nextMutation(-1);
+		if (position >= totalLength) {
+			return detector;
+		}
 		
 		// Mutates the threshold.
-		for (int i = 0; i < threshold.length; i++) {
-			if (Math.random() < mutationRate) {
-				threshold[i] = detector.threshold[i] == Bit.ZERO? Bit.ONE : Bit.ZERO;
-			} else {
-				threshold[i] = detector.threshold[i];
-			}
+		for (; position < thresholdLength; position = nextMutation(position)) {
+			detector.threshold.flip(position);
 		}
 		
 		// Mutates the pattern.
-		for (int i = 0; i < pattern.length; i++) {
-			if (Math.random() < mutationRate) {
-				pattern[i] = detector.pattern[i] == Bit.ZERO? Bit.ONE : Bit.ZERO;
-			} else {
-				pattern[i] = detector.pattern[i];
-			}
+		for (; position < thresholdLength + patternLength; position = nextMutation(position)) {
+			detector.pattern.flip(position - thresholdLength);
 		}
 		
 		// Mutates the mask.
-		for (int i = 0; i < mask.length; i++) {
-			if (Math.random() < mutationRate) {
-				mask[i] = detector.mask[i] == Bit.ZERO? Bit.ONE : Bit.ZERO;
-			} else {
-				mask[i] = detector.mask[i];
-			}
+		for (; position < totalLength; position = nextMutation(position)) {
+			detector.mask.flip(position - thresholdLength - patternLength);
+		}
+		
+		detector.rebuild();
+		return detector;
+	}
+	
+	/**
+	 * <p>Draws the position of the next mutated bit.</p>
+	 * @param position the position of the last mutated bit, or -1
+	 * if no bit has been mutated yet.
+	 * @return the position of the next mutated bit, which may be
+	 * beyond the vector length.
+	 */
+	private int nextMutation (int position) {
+		if (mutationRate <= 0) {
+			return Integer.MAX_VALUE;
+		}
+		if (mutationRate >= 1) {
+			return position + 1;
 		}
 		
-		return new Detector(type, threshold, pattern, mask);
+		// The number of bits skipped follows a geometric distribution.
+		double skip = Math.floor(Math.log(1 - random.nextDouble()) / logKeepRate);
+		return (int) Math.min(Integer.MAX_VALUE, position + 1 + skip);
 	}
 }
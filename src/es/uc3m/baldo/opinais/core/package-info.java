@@ -1,8 +1,8 @@
 /**
  * <p>This package contains the basic classes required by the AIS-based
  * algorithm, such as the enumerated type representing a 
- * {@link es.uc3m.baldo.opinais.core.Bit},
- * as well as the {@link es.uc3m.baldo.opinais.core.Individual} class itself 
+ * {@link es.uc3m.baldo.opinais.core.Bit} and the packed
+ * {@link es.uc3m.baldo.opinais.core.BitVector}, as well as the {@link es.uc3m.baldo.opinais.core.Individual} class itself 
  * and a class storing all the application properties.</p>
  * 
  * @author Alejandro Baldominos
@@ -0,0 +1,154 @@
+package es.uc3m.baldo.opinais.core.random;
+
+import java.util.Random;
+
+/**
+ * SplitMixRandom.
+ * <p>Generates pseudo-random numbers using the SplitMix64 algorithm,
+ * the same used by <em>java.util.SplittableRandom</em>.</p>
+ * <p>Unlike <em>java.util.Random</em> (and therefore <em>Math.random()</em>),
+ * this generator is not thread-safe and never synchronizes. Instead, it
+ * can be split into independent generators, so that each task or thread
+ * uses its own stream without contention. Since splitting is itself
+ * deterministic, a whole run can be reproduced from a single seed,
+ * regardless of the number of threads, as long as streams are split
+ * in the same order.</p>
+ * <p>This class extends <em>java.util.Random</em>, so that it can be
+ * used anywhere a random generator is expected.</p>
+ * 
+ * @author Alejandro Baldominos
+ */
+public class SplitMixRandom extends Random {
+
+	private static final long serialVersionUID = 1L;
+
+	/*
+	 * Increment added to the state on each step by the generators built
+	 * from a seed (the odd integer closest to 2^64 divided by the golden
+	 * ratio).
+	 */
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+	
+	/*
+	 * The internal state, and the increment added to it on each step.
+	 */
+	private long state;
+	private long gamma;
+	
+	/**
+	 * <p>Builds a new generator with a seed derived from the 
+	 * current time.</p>
+	 */
+	public SplitMixRandom () {
+		this(mix64(System.nanoTime()) ^ System.currentTimeMillis());
+	}
+	
+	/**
+	 * <p>Builds a new generator with a given seed.</p>
+	 * @param seed the seed.
+	 */
+	public SplitMixRandom (long seed) {
+		this(seed, GOLDEN_GAMMA);
+	}
+	
+	/*
+	 * Builds a new generator with a given seed and increment,
+	 * which must be odd.
+	 */
+	private SplitMixRandom (long seed, long gamma) {
+		super(seed);
+		this.state = seed;
+		this.gamma = gamma;
+	}
+	
+	/**
+	 * <p>Returns a new generator, whose stream is statistically
+	 * independent from the stream of this generator.</p>
+	 * <p>As in <em>java.util.SplittableRandom</em>, both the seed and
+	 * the increment of the new generator are derived from this generator,
+	 * so the new generator does not follow the same sequence of states
+	 * from another point.</p>
+	 * <p>Both generators can then be used concurrently by different
+	 * threads.</p>
+	 * @return a new generator.
+	 */
+	public SplitMixRandom split () {
+		long seed = nextLong();
+		state += gamma;
+		return new SplitMixRandom(seed, mixGamma(state));
+	}
+	
+	/**
+	 * <p>Returns the internal state of the generator.</p>
+	 * <p>A generator built with this state as its seed produces
+	 * the same stream as this generator from this point on, so it
+	 * can be used to save and restore runs. This only holds for
+	 * generators built from a seed, not for those returned by
+	 * {@link #split()}, whose increment is different.</p>
+	 * @return the internal state.
+	 */
+	public long getState () {
+		return state;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void setSeed (long seed) {
+		this.state = seed;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public long nextLong () {
+		state += gamma;
+		return mix64(state);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public double nextDouble () {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected int next (int bits) {
+		return (int) (nextLong() >>> (64 - bits));
+	}
+	
+	/**
+	 * <p>Scrambles the bits of a value, so that close values
+	 * produce unrelated outputs.</p>
+	 * @param z the value.
+	 * @return the scrambled value.
+	 */
+	private static long mix64 (long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+	
+	/**
+	 * <p>Derives the increment of a split generator from a value, as
+	 * <em>java.util.SplittableRandom</em> does: the value is scrambled
+	 * and made odd, and increments with too few transitions between
+	 * consecutive bits, which mix the states poorly, are flipped.</p>
+	 * @param z the value.
+	 * @return the increment.
+	 */
+	private static long mixGamma (long z) {
+		z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+		z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		z = (z ^ (z >>> 33)) | 1L;
+		int transitions = Long.bitCount(z ^ (z >>> 1));
+		return transitions < 24? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+	}
+}
\ No newline at end of file
@@ -0,0 +1,10 @@
+/**
+ * <p>This package provides the random number generators used by
+ * the algorithms, the operators and the selectors.</p>
+ * <p>Generators are injected rather than shared, so that parallel
+ * tasks do not contend for a single generator and whole runs can be
+ * reproduced from a master seed.</p>
+ * 
+ * @author Alejandro Baldominos
+ */
+package es.uc3m.baldo.opinais.core.random;
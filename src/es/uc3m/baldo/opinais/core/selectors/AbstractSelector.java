@@ -1,6 +1,7 @@
 package es.uc3m.baldo.opinais.core.selectors;
 
 import java.util.Collection;
+import java.util.Random;
 
 import es.uc3m.baldo.opinais.core.detectors.Detector;
 
@@ -11,30 +12,81 @@ import es.uc3m.baldo.opinais.core.detectors.Detector;
  * <em>select</em> functionality, it exists for commodity
  * purposes, as most selectors will make their selection from
  * a collection of detectors. This class receives this collection
- * in the constructor.</p>
+ * in the constructor, and stores it in an array so that detectors
+ * can be identified by their position.</p>
  * @author Alejandro Baldominos
  */
 public abstract class AbstractSelector implements Selector {
 
 	/**
-	 * The list of detectors, sorted by descending fitness.
+	 * The array of detectors, sorted by descending fitness.
 	 */
-	protected Collection<Detector> population;
+	protected Detector[] population;
+	
+	/**
+	 * The random generator.
+	 */
+	protected Random random;
 	
 	/**
 	 * <p>Builds a new abstract selector.</p>
 	 * @param population the list of detectors.
+	 * @param random the random generator, which must not be shared 
+	 * with other threads.
 	 */
-	public AbstractSelector (Collection<Detector> population) {
+	public AbstractSelector (Collection<Detector> population, Random random) {
+		this(population.toArray(new Detector[population.size()]), random);
+	}
+	
+	/**
+	 * <p>Builds a new abstract selector.</p>
+	 * @param population the array of detectors, which is not copied
+	 * and must not be modified while the selector is used.
+	 * @param random the random generator, which must not be shared 
+	 * with other threads.
+	 */
+	public AbstractSelector (Detector[] population, Random random) {
 		this.population = population;
+		this.random = random;
 	}
 	
 	/**
 	 * <p>Selects a detector from the population.</p>
-	 * <p>This method must be overriden and implemented by a 
-	 * child class.</p>
 	 * @return the selected detector.
 	 */
 	@Override
-	public abstract Detector selectDetector ();
+	public Detector selectDetector () {
+		return population[selectIndex()];
+	}
+	
+	/**
+	 * <p>Selects several detectors from the population at once.</p>
+	 * <p>By default, each detector is selected independently.
+	 * Child classes may override this method to select all the 
+	 * detectors in a single pass.</p>
+	 * @param selected the array to be filled with the positions
+	 * of the selected detectors in the population.
+	 */
+	@Override
+	public void select (int[] selected) {
+		for (int i = 0; i < selected.length; i++) {
+			selected[i] = selectIndex();
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Detector getDetector (int index) {
+		return population[index];
+	}
+	
+	/**
+	 * <p>Selects the position of a detector in the population.</p>
+	 * <p>This method must be overriden and implemented by a 
+	 * child class.</p>
+	 * @return the position of the selected detector.
+	 */
+	protected abstract int selectIndex ();
 }
@@ -1,8 +1,10 @@
 package es.uc3m.baldo.opinais.core.selectors;
 
-import java.util.List;
+import java.util.Collection;
+import java.util.Random;
 
 import es.uc3m.baldo.opinais.core.detectors.Detector;
+import es.uc3m.baldo.opinais.core.random.SplitMixRandom;
 
 /**
  * RouletteSelector.
@@ -10,66 +12,157 @@ import es.uc3m.baldo.opinais.core.detectors.Detector;
  * in a fitness-proportional way.</p>
  * <p>For the roulette selector to work, all fitness must 
  * be positive.</p>
+ * <p>The cumulative fitness of the population is computed once, 
+ * so that each selection is a binary search over it. Optionally,
+ * several detectors can be selected at once using stochastic
+ * universal sampling, which spins the roulette only once for all
+ * of them.</p>
  * 
  * @author Alejandro Baldominos
  */
 public class RouletteSelector extends AbstractSelector {
 	
+	/*
+	 * The sum of fitness for each detector and all the
+	 * detectors preceding it.
+	 */
+	private double[] cumulativeFitness;
+	
 	/*
 	 * The sum of fitness for all the detectors.
 	 */
 	private double totalCumulativeFitness;
 	
+	/*
+	 * Whether several detectors are selected at once
+	 * using stochastic universal sampling.
+	 */
+	private boolean universalSampling;
+	
 	/**
 	 * <p>Builds a new roulette selector.</p>
 	 * @param population the list of detectors, which must be sorted by descending fitness.
 	 */
-	public RouletteSelector (List<Detector> population) {
-		super(population);
-		this.totalCumulativeFitness = calculateTotalCumulativeFitness(population);
+	public RouletteSelector (Collection<Detector> population) {
+		this(population, false, new SplitMixRandom());
+	}
+	
+	/**
+	 * <p>Builds a new roulette selector.</p>
+	 * @param population the list of detectors, which must be sorted by descending fitness.
+	 * @param universalSampling whether several detectors are selected at once
+	 * using stochastic universal sampling.
+	 * @param random the random generator, which must not be shared with other threads.
+	 */
+	public RouletteSelector (Collection<Detector> population, boolean universalSampling, Random random) {
+		this(population.toArray(new Detector[population.size()]), universalSampling, random);
+	}
+	
+	/**
+	 * <p>Builds a new roulette selector.</p>
+	 * @param population the array of detectors, which is not copied. The
+	 * probabilities do not depend on the order of the detectors.
+	 * @param universalSampling whether several detectors are selected at once
+	 * using stochastic universal sampling.
+	 * @param random the random generator, which must not be shared with other threads.
+	 */
+	public RouletteSelector (Detector[] population, boolean universalSampling, Random random) {
+		super(population, random);
+		this.universalSampling = universalSampling;
+		this.cumulativeFitness = calculateCumulativeFitness(this.population);
+		this.totalCumulativeFitness = cumulativeFitness.length > 0?
+									  cumulativeFitness[cumulativeFitness.length - 1] : 0;
 	}
 	
 	/**
 	 * <p>Selects a detector from the population. This selection is performed
 	 * randomly, but preferring those detectors which have a higher fitness
 	 * value.</p>
-	 * @return the selected detector.
+	 * @return the position of the selected detector.
 	 */
 	@Override
-	public Detector selectDetector () {
+	protected int selectIndex () {
 		// Generates a random number between zero and the total sum of fitness.
-		double rand = Math.random() * totalCumulativeFitness;
+		double rand = random.nextDouble() * totalCumulativeFitness;
 
-		// Stores the cumulative fitness.
-		double cumulative = 0;
+		return find(rand);
+	}
+	
+	/**
+	 * <p>Selects several detectors from the population at once.</p>
+	 * <p>If stochastic universal sampling is enabled, the roulette is spun
+	 * only once, with as many equally spaced pointers as detectors to be 
+	 * selected. The selected detectors are then shuffled, so that they
+	 * can be paired in order. Otherwise, each detector is selected 
+	 * independently.</p>
+	 * @param selected the array to be filled with the positions
+	 * of the selected detectors in the population.
+	 */
+	@Override
+	public void select (int[] selected) {
+		if (!universalSampling) {
+			super.select(selected);
+			return;
+		}
 		
-		// Iterates over each detector.
-		for (Detector detector : population) {
-			cumulative += detector.getFitness();
-			
-			// If the cumulative fitness is already higher than
-			// the random number, then this is the selected detector.
-			if (rand <= cumulative) {
-				return detector;
+		// The distance between two consecutive pointers.
+		double step = totalCumulativeFitness / selected.length;
+		double pointer = random.nextDouble() * step;
+		
+		// Since pointers are sorted, the roulette is traversed only once.
+		int index = 0;
+		for (int i = 0; i < selected.length; i++, pointer += step) {
+			while (index < cumulativeFitness.length - 1 && cumulativeFitness[index] < pointer) {
+				index++;
 			}
+			selected[i] = index;
 		}
 		
-		// This case is actually impossible.
-		return null;		
+		// Shuffles the selected detectors.
+		for (int i = selected.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int swap = selected[i];
+			selected[i] = selected[j];
+			selected[j] = swap;
+		}
+	}
+	
+	/**
+	 * <p>Finds the first detector whose cumulative fitness is equal or
+	 * greater than a certain value.</p>
+	 * @param value the value.
+	 * @return the position of the detector.
+	 */
+	private int find (double value) {
+		int low = 0;
+		int high = cumulativeFitness.length - 1;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (cumulativeFitness[middle] < value) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
 	}
 	
 	/**
-	 * <p>Calculates the total sum of fitness of all detectors.</p>
-	 * @param population a list of detectors.
-	 * @return the sum of all fitness for all detectors.
+	 * <p>Calculates the cumulative sum of fitness of the detectors.</p>
+	 * @param population an array of detectors.
+	 * @return the sum of fitness for each detector and all the 
+	 * detectors preceding it.
 	 */
-	private double calculateTotalCumulativeFitness (List<Detector> population) {
+	private double[] calculateCumulativeFitness (Detector[] population) {
+		double[] cumulative = new double[population.length];
+		
 		// Stores the sum of fitness.
-		double cumulative = 0;
+		double sum = 0;
 		
 		// Iterates over each detector.
-		for (Detector detector : population) {
-			cumulative += detector.getFitness();
+		for (int i = 0; i < population.length; i++) {
+			sum += population[i].getFitness();
+			cumulative[i] = sum;
 		}
 		
 		return cumulative;
@@ -15,4 +15,20 @@ public interface Selector {
 	 * @return the selected detector.
 	 */
 	public Detector selectDetector ();
+	
+	/**
+	 * <p>Selects several detectors from the population at once, 
+	 * e.g., all the parents required for a generation.</p>
+	 * @param selected the array to be filled with the positions
+	 * of the selected detectors in the population.
+	 */
+	public void select (int[] selected);
+	
+	/**
+	 * <p>Returns the detector located at a certain position of
+	 * the population.</p>
+	 * @param index the position of the detector.
+	 * @return the detector at the given position.
+	 */
+	public Detector getDetector (int index);
 }
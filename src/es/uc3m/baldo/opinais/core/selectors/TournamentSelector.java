@@ -0,0 +1,68 @@
+package es.uc3m.baldo.opinais.core.selectors;
+
+import java.util.Collection;
+import java.util.Random;
+
+import es.uc3m.baldo.opinais.core.detectors.Detector;
+
+/**
+ * TournamentSelector.
+ * <p>Selects one individual from the population by picking
+ * several detectors uniformly at random and keeping the one
+ * with the highest fitness.</p>
+ * <p>Unlike the roulette selector, this selector only compares
+ * fitness values, so they do not need to be positive nor summed
+ * over the whole population. The selection pressure is controlled
+ * by the tournament size.</p>
+ * 
+ * @author Alejandro Baldominos
+ */
+public class TournamentSelector extends AbstractSelector {
+
+	/*
+	 * The number of detectors competing in each tournament.
+	 */
+	private int tournamentSize;
+	
+	/**
+	 * <p>Builds a new tournament selector.</p>
+	 * @param population the list of detectors.
+	 * @param tournamentSize the number of detectors competing in
+	 * each tournament, which must be at least 1.
+	 * @param random the random generator, which must not be shared with other threads.
+	 */
+	public TournamentSelector (Collection<Detector> population, int tournamentSize, Random random) {
+		this(population.toArray(new Detector[population.size()]), tournamentSize, random);
+	}
+	
+	/**
+	 * <p>Builds a new tournament selector.</p>
+	 * @param population the array of detectors, which is not copied.
+	 * @param tournamentSize the number of detectors competing in
+	 * each tournament, which must be at least 1.
+	 * @param random the random generator, which must not be shared with other threads.
+	 */
+	public TournamentSelector (Detector[] population, int tournamentSize, Random random) {
+		super(population, random);
+		this.tournamentSize = Math.max(1, tournamentSize);
+	}
+	
+	/**
+	 * <p>Selects a detector from the population. The detector is the
+	 * winner of a tournament among randomly chosen detectors. Ties are
+	 * won by the detector placed first in the population.</p>
+	 * @return the position of the selected detector.
+	 */
+	@Override
+	protected int selectIndex () {
+		int winner = random.nextInt(population.length);
+		for (int i = 1; i < tournamentSize; i++) {
+			int challenger = random.nextInt(population.length);
+			double difference = population[challenger].getFitness() - population[winner].getFitness();
+			if (difference > 0 || (difference == 0 && challenger < winner)) {
+				winner = challenger;
+			}
+		}
+		return winner;
+	}
+}
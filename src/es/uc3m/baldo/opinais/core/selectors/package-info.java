@@ -1,7 +1,8 @@
 /**
  * <p>This package stores all the selectors, which are used by
  * an evolutionary algorithm to select a detector from a population.</p>
- * <p>All detectors must conform to the {@link es.uc3m.baldo.opinais.core.selectors.Selector} 
+ * <p>Roulette and tournament selectors are provided.</p>
+ * <p>All selectors must conform to the {@link es.uc3m.baldo.opinais.core.selectors.Selector} 
  * interface, and may optionally inherit from the 
  * {@link es.uc3m.baldo.opinais.core.selectors.AbstractSelector} class.</p>
  * 
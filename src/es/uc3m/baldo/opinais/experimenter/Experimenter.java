@@ -10,8 +10,10 @@ import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
 
+import es.uc3m.baldo.opinais.core.BitSlicedDataset;
 import es.uc3m.baldo.opinais.core.Classifier;
 import es.uc3m.baldo.opinais.core.Individual;
+import es.uc3m.baldo.opinais.core.detectors.Detector;
 import es.uc3m.baldo.opinais.core.types.Type;
 
 /**
@@ -89,6 +91,9 @@ public class Experimenter {
 	/**
 	 * <p>Retrieves the confusion matrix for the inference provided by the best
 	 * detectors over each type of individual.</p>
+	 * <p>Only the individuals with a valid matching ratio for more
+	 * than one detector need to be classified one by one; the
+	 * remaining ones are counted using bitmaps.</p>
 	 * @param classifier the classifier.
 	 * @param individuals the set of individuals.
 	 * @return the hit ratio.
@@ -105,14 +110,66 @@ public class Experimenter {
 			}
 		}
 
-		// Iterates through every individual.
-		for (Individual individual : individuals) {
-			// Infers the type.
-			Type inferredType = classifier.classify(individual);
-
-			// Increases the counter for the Real-Inferred matrix.
-			Map<Type, Integer> row = matrix.get(individual.type);
-			row.put(inferredType, row.get(inferredType) + 1);
+		// Builds a bit-sliced view of the individuals, so that the valid
+		// matches of each detector are found with bitwise operations.
+		BitSlicedDataset dataset = new BitSlicedDataset(individuals);
+		Individual[] array = dataset.getIndividuals();
+		
+		// Finds the individuals with a valid matching ratio for each type,
+		// as well as those with more than one.
+		Map<Type, long[]> valid = new HashMap<Type, long[]>();
+		long[] any = new long[dataset.getBlocks()];
+		long[] conflicts = new long[dataset.getBlocks()];
+		for (Map.Entry<Type, Detector> entry : classifier.getDetectors().entrySet()) {
+			long[] bitmap = dataset.validMatch(entry.getValue());
+			for (int w = 0; w < bitmap.length; w++) {
+				conflicts[w] |= any[w] & bitmap[w];
+				any[w] |= bitmap[w];
+			}
+			valid.put(entry.getKey(), bitmap);
+		}
+		
+		// Iterates through every real type, counting with popcounts
+		// the individuals which are unclassified or whose type is
+		// inferred by a single detector.
+		for (Type realType : Type.values()) {
+			long[] sameType = dataset.getTypeBitmap(realType);
+			if (sameType == null) {
+				continue;
+			}
+			Map<Type, Integer> row = matrix.get(realType);
+			
+			int unclassified = 0;
+			for (int w = 0; w < sameType.length; w++) {
+				unclassified += Long.bitCount(sameType[w] & ~any[w]);
+			}
+			row.put(null, row.get(null) + unclassified);
+			
+			for (Map.Entry<Type, long[]> entry : valid.entrySet()) {
+				long[] bitmap = entry.getValue();
+				int count = 0;
+				for (int w = 0; w < sameType.length; w++) {
+					count += Long.bitCount(sameType[w] & bitmap[w] & ~conflicts[w]);
+				}
+				row.put(entry.getKey(), row.get(entry.getKey()) + count);
+			}
+		}
+		
+		// The individuals with more than one valid matching ratio
+		// are classified one by one.
+		for (int w = 0; w < conflicts.length; w++) {
+			long lanes = conflicts[w];
+			while (lanes != 0) {
+				Individual individual = array[w * 64 + Long.numberOfTrailingZeros(lanes)];
+				lanes &= lanes - 1;
+				
+				// Infers the type.
+				Type inferredType = classifier.classify(individual);
+	
+				// Increases the counter for the Real-Inferred matrix.
+				Map<Type, Integer> row = matrix.get(individual.type);
+				row.put(inferredType, row.get(inferredType) + 1);
+			}
 		}
 		
 		return matrix;
@@ -0,0 +1,94 @@
+package es.uc3m.baldo.opinais.experimenter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import es.uc3m.baldo.opinais.core.algorithms.Population;
+import es.uc3m.baldo.opinais.core.detectors.Detector;
+import es.uc3m.baldo.opinais.core.detectors.DetectorFactory;
+import es.uc3m.baldo.opinais.core.random.SplitMixRandom;
+
+/**
+ * RankingBenchmark.
+ * <p>Measures the time required to rank a population of detectors
+ * every generation, comparing a full sort of a list of detectors (as
+ * algorithms used to do), a full ranking of a population, and the
+ * partial ranking of its elite.</p>
+ * <p>Fitness values are redrawn before each ranking, with few distinct
+ * values, as it happens with fitness computed over small training sets.</p>
+ * 
+ * @author Alejandro Baldominos
+ */
+public class RankingBenchmark {
+
+	/*
+	 * Number of rankings measured for each population size.
+	 */
+	private static final int ROUNDS = 50;
+	
+	/**
+	 * <p>Runs the benchmark.</p>
+	 * @param args the fraction of elite detectors (0.01 by default),
+	 * followed by the population sizes to be measured.
+	 */
+	public static void main (String[] args) {
+		double elitism = args.length > 0? Double.parseDouble(args[0]) : 0.01;
+		int[] sizes = {1000, 10000, 100000, 1000000};
+		if (args.length > 1) {
+			sizes = new int[args.length - 1];
+			for (int i = 1; i < args.length; i++) {
+				sizes[i - 1] = Integer.parseInt(args[i]);
+			}
+		}
+		
+		SplitMixRandom random = new SplitMixRandom(1);
+		System.out.println("speciesSize\telite\tsortList(ms)\trankAll(ms)\trankElite(ms)");
+		for (int size : sizes) {
+			List<Detector> detectors = new ArrayList<Detector>(size);
+			for (int i = 0; i < size; i++) {
+				detectors.add(DetectorFactory.makeDetector(16, 0.5, 0.5, random));
+			}
+			int elite = Math.max(1, (int) Math.ceil(size * elitism));
+			
+			// Sorts a linked list of detectors.
+			List<Detector> list = new LinkedList<Detector>(detectors);
+			long sortList = 0;
+			for (int round = 0; round < ROUNDS; round++) {
+				for (Detector detector : list) {
+					detector.setFitness(random.nextInt(1000) / 1000.0);
+				}
+				long start = System.nanoTime();
+				Collections.sort(list);
+				sortList += System.nanoTime() - start;
+			}
+			
+			// Ranks the whole population.
+			Population population = new Population(detectors);
+			long rankAll = 0;
+			for (int round = 0; round < ROUNDS; round++) {
+				for (int i = 0; i < size; i++) {
+					population.setFitness(i, random.nextInt(1000) / 1000.0);
+				}
+				long start = System.nanoTime();
+				population.rank();
+				rankAll += System.nanoTime() - start;
+			}
+			
+			// Ranks only the elite of the population.
+			long rankElite = 0;
+			for (int round = 0; round < ROUNDS; round++) {
+				for (int i = 0; i < size; i++) {
+					population.setFitness(i, random.nextInt(1000) / 1000.0);
+				}
+				long start = System.nanoTime();
+				population.rank(elite);
+				rankElite += System.nanoTime() - start;
+			}
+			
+			System.out.printf("%d\t%d\t%.3f\t%.3f\t%.3f%n", size, elite, 
+							  sortList / 1e6 / ROUNDS, rankAll / 1e6 / ROUNDS, rankElite / 1e6 / ROUNDS);
+		}
+	}
+}
@@ -0,0 +1,200 @@
+package es.uc3m.baldo.opinais.experimenter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import es.uc3m.baldo.opinais.core.Bit;
+import es.uc3m.baldo.opinais.core.Individual;
+import es.uc3m.baldo.opinais.core.algorithms.Algorithm;
+import es.uc3m.baldo.opinais.core.algorithms.Confusion;
+import es.uc3m.baldo.opinais.core.algorithms.EvolutionaryAlgorithm;
+import es.uc3m.baldo.opinais.core.algorithms.LocalShard;
+import es.uc3m.baldo.opinais.core.algorithms.RemoteShard;
+import es.uc3m.baldo.opinais.core.algorithms.Shard;
+import es.uc3m.baldo.opinais.core.algorithms.ShardWorker;
+import es.uc3m.baldo.opinais.core.detectors.Detector;
+import es.uc3m.baldo.opinais.core.detectors.DetectorFactory;
+import es.uc3m.baldo.opinais.core.random.SplitMixRandom;
+import es.uc3m.baldo.opinais.core.types.Type;
+import es.uc3m.baldo.opinais.core.types.TypeBuilder;
+
+/**
+ * ShardBenchmark.
+ * <p>Checks that evaluating the detectors over shards held by
+ * {@link ShardWorker}s produces the same fitness as evaluating them
+ * locally, and measures the time required by both.</p>
+ * <p>The workers run in this process, on ephemeral ports of
+ * <em>localhost</em>, so no other process is required. First, the
+ * confusion counts of a batch of random detectors are compared, and then
+ * whole runs of the evolutionary algorithm with the same seed, which must
+ * find the same detectors. The co-evolutionary algorithm is not compared,
+ * since it ignores the shards.</p>
+ * <p>The process exits with status 1 if any result differs.</p>
+ *
+ * @author Alejandro Baldominos
+ */
+public class ShardBenchmark {
+
+	/*
+	 * Number of random detectors whose counts are compared.
+	 */
+	private static final int DETECTORS = 1000;
+
+	/*
+	 * Settings of the algorithms whose runs are compared.
+	 */
+	private static final int SPECIES_SIZE = 300;
+	private static final int GENERATIONS = 100;
+	private static final long SEED = 42;
+
+	/**
+	 * <p>Runs the benchmark.</p>
+	 * @param args the number of workers (3 by default), the number of
+	 * individuals (20000 by default) and the number of features of each
+	 * individual (100 by default).
+	 * @throws IOException if the workers cannot be started or reached.
+	 */
+	public static void main (String[] args) throws IOException {
+		int workers = args.length > 0? Integer.parseInt(args[0]) : 3;
+		int size = args.length > 1? Integer.parseInt(args[1]) : 20000;
+		int featuresLength = args.length > 2? Integer.parseInt(args[2]) : 100;
+
+		// At least two types are required.
+		while (Type.values().length < 2) {
+			TypeBuilder.addType("Type" + Type.values().length);
+		}
+
+		// Generates random individuals, whose type depends on their first bits.
+		SplitMixRandom random = new SplitMixRandom(1);
+		Set<Individual> individuals = new LinkedHashSet<Individual>();
+		for (int i = 0; i < size; i++) {
+			Bit[] bits = new Bit[featuresLength];
+			for (int j = 0; j < featuresLength; j++) {
+				bits[j] = random.nextBoolean()? Bit.ONE : Bit.ZERO;
+			}
+			int type = (bits[0] == Bit.ONE? 1 : 0) + (bits[1] == Bit.ONE? 1 : 0);
+			individuals.add(new Individual(Type.values()[type % Type.values().length], bits));
+		}
+
+		// Starts the workers.
+		String addresses = "";
+		List<ServerSocket> servers = new ArrayList<ServerSocket>();
+		for (int i = 0; i < workers; i++) {
+			final ServerSocket server = new ServerSocket(0, 0, InetAddress.getLoopbackAddress());
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run () {
+					ShardWorker.serve(server);
+				}
+			}, "shard-worker-" + i);
+			thread.setDaemon(true);
+			thread.start();
+			servers.add(server);
+			addresses += (i > 0? "," : "") + "localhost:" + server.getLocalPort();
+		}
+
+		boolean equal = compareCounts(individuals, featuresLength, servers, random);
+		String local = run(individuals, null);
+		String sharded = run(individuals, addresses);
+		System.out.println("EvolutionaryAlgorithm finds the same detectors: " + local.equals(sharded));
+		equal &= local.equals(sharded);
+
+		for (ServerSocket server : servers) {
+			server.close();
+		}
+		System.exit(equal? 0 : 1);
+	}
+
+	/*
+	 * Compares the confusion counts of random detectors over all the
+	 * individuals with the sum of their counts over the shards.
+	 */
+	private static boolean compareCounts (Set<Individual> individuals, int featuresLength,
+										  List<ServerSocket> servers, SplitMixRandom random) throws IOException {
+		Detector[] detectors = new Detector[DETECTORS];
+		for (int i = 0; i < detectors.length; i++) {
+			detectors[i] = DetectorFactory.makeDetector(featuresLength, 0.5, 0.5, random);
+		}
+
+		long start = System.nanoTime();
+		Shard local = new LocalShard(individuals);
+		local.submit(detectors);
+		Confusion[] expected = local.collect();
+		long localTime = System.nanoTime() - start;
+
+		// Deals the individuals to the shards in turns.
+		List<List<Individual>> partitions = new ArrayList<List<Individual>>();
+		for (int i = 0; i < servers.size(); i++) {
+			partitions.add(new ArrayList<Individual>());
+		}
+		int next = 0;
+		for (Individual individual : individuals) {
+			partitions.get(next).add(individual);
+			next = (next + 1) % partitions.size();
+		}
+		List<Shard> shards = new ArrayList<Shard>();
+		for (int i = 0; i < servers.size(); i++) {
+			shards.add(new RemoteShard("localhost", servers.get(i).getLocalPort(), partitions.get(i), featuresLength));
+		}
+
+		start = System.nanoTime();
+		Confusion[] counts = new Confusion[detectors.length];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = new Confusion();
+		}
+		for (Shard shard : shards) {
+			shard.submit(detectors);
+		}
+		for (Shard shard : shards) {
+			Confusion[] partial = shard.collect();
+			for (int i = 0; i < counts.length; i++) {
+				counts[i].add(partial[i]);
+			}
+			shard.close();
+		}
+		long shardedTime = System.nanoTime() - start;
+
+		boolean equal = true;
+		for (int i = 0; i < counts.length; i++) {
+			equal &= counts[i].truePositives == expected[i].truePositives
+					 && counts[i].falsePositives == expected[i].falsePositives
+					 && counts[i].falseNegatives == expected[i].falseNegatives
+					 && counts[i].trueNegatives == expected[i].trueNegatives;
+		}
+		System.out.printf("Counts of %d detectors over %d individuals: local %.1f ms, %d shards %.1f ms, equal: %b%n",
+						  detectors.length, individuals.size(), localTime / 1e6, shards.size(), shardedTime / 1e6, equal);
+		return equal;
+	}
+
+	/*
+	 * Runs the evolutionary algorithm, either locally or over the shards,
+	 * and returns the detectors it finds.
+	 */
+	private static String run (Set<Individual> individuals, String shards) {
+		Algorithm algorithm = new EvolutionaryAlgorithm(SPECIES_SIZE, 0.5, 0.5, 0.6, 0.01, 0.01, GENERATIONS);
+		algorithm.setSeed(SEED);
+		algorithm.setShards(shards);
+
+		// The progress of the algorithm is not printed.
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new ByteArrayOutputStream()));
+		long start = System.nanoTime();
+		String detectors;
+		try {
+			algorithm.setIndividuals(individuals);
+			detectors = algorithm.run().getDetectors().toString();
+		} finally {
+			System.setOut(out);
+		}
+		System.out.printf("EvolutionaryAlgorithm %s: %.1f ms%n", shards == null? "locally" : "over the shards",
+						  (System.nanoTime() - start) / 1e6);
+		return detectors;
+	}
+}
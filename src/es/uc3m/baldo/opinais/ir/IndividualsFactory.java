@@ -35,5 +35,31 @@ public interface IndividualsFactory<T extends Item> {
 	 */
 	public Set<Individual> makeIndividuals (File inputFile, Reader<T> reader, 
 											List<Preprocessor<String>> preprocessors, int nFeatures, int nIndividuals, boolean isBalanced);
+	
+	/**
+	 * <p>Generates a set of individuals from a source file, using the
+	 * features of a trained model.</p>
+	 * <p>All the items are vectorized, and no features are extracted,
+	 * so the individuals are comparable with those used for training.</p>
+	 * @param inputFile the source file containing the items.
+	 * @param reader a reader object which provides the logic to
+	 * retrieve items from the input file.
+	 * @param preprocessors a list of pre-processors to be executed
+	 * over the items.
+	 * @param vocabulary the names of the features, in the order of
+	 * the bits, as returned by {@link #getVocabulary()}.
+	 * @return the set of generated individuals.
+	 */
+	public Set<Individual> makeIndividuals (File inputFile, Reader<T> reader, 
+											List<Preprocessor<String>> preprocessors, String[] vocabulary);
+	
+	/**
+	 * <p>Returns the names of the features of the last generated individuals,
+	 * in the order of their bits, which are required to vectorize new items
+	 * in the same way.</p>
+	 * @return the names of the features, or null if the features are not named
+	 * or no individuals have been generated yet.
+	 */
+	public String[] getVocabulary ();
 
 }
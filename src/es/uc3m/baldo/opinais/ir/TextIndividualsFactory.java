@@ -30,6 +30,12 @@ import es.uc3m.baldo.opinais.ir.vectorizers.TextVectorizer;
  */
 public class TextIndividualsFactory<T extends TextItem> implements IndividualsFactory<T> {
 	
+	/*
+	 * The words used as features by the last generated individuals,
+	 * in the order of their bits.
+	 */
+	private String[] vocabulary;
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -114,6 +120,10 @@ public class TextIndividualsFactory<T extends TextItem> implements IndividualsFa
 		System.out.println("Retrieving the list of features...");
 		TextFeaturesExtractor<T> extractor = new TextFeaturesExtractor<>(nFeatures);
 		Feature<String>[] features = extractor.extractFeatures(items);
+		vocabulary = new String[features.length];
+		for (int i = 0; i < features.length; i++) {
+			vocabulary[i] = features[i].getValue();
+		}
 			
 		// Vectorizes each item into an individual and adds it to the set.
 		System.out.println("Vectorizing the individuals...");
@@ -126,4 +136,41 @@ public class TextIndividualsFactory<T extends TextItem> implements IndividualsFa
 		
 		return individuals;
 	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Set<Individual> makeIndividuals (File inputFile, Reader<T> reader, 
+											List<Preprocessor<String>> preprocessors, String[] vocabulary) {
+		System.out.println("Reading the input file...");
+		Set<T> items = reader.read(inputFile);
+		
+		// Executes the specified preprocessors over the items.
+		System.out.println("Executing the preprocessors...");
+		for (Preprocessor<String> preprocessor : preprocessors) {
+			for (TextItem item : items) {
+				item.setText(preprocessor.process(item.getText()));
+			}
+		}
+		
+		// Vectorizes each item with the given features.
+		System.out.println("Vectorizing the individuals...");
+		Set<Individual> individuals = new HashSet<Individual>();
+		TextVectorizer vectorizer = new TextVectorizer(vocabulary);
+		for (TextItem item : items) {
+			individuals.add(new Individual(item.getType(), vectorizer.vectorize(item)));
+		}
+		this.vocabulary = vocabulary;
+		
+		return individuals;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String[] getVocabulary () {
+		return vocabulary;
+	}
 }
@@ -30,6 +30,37 @@ import es.uc3m.baldo.opinais.ir.vectorizers.VotingRecordVectorizer;
  */
 public class VotingRecordIndividualsFactory implements IndividualsFactory<VotingRecord> {
 	
+	/**
+	 * {@inheritDoc}
+	 * <p>The features of voting records are not named, so the vocabulary
+	 * is ignored.</p>
+	 */
+	@Override
+	public Set<Individual> makeIndividuals (File inputFile, Reader<VotingRecord> reader, 
+											List<Preprocessor<String>> preprocessors, String[] vocabulary) {
+		System.out.println("Reading the input file...");
+		Set<VotingRecord> items = reader.read(inputFile);
+		
+		System.out.println("Vectorizing the individuals...");
+		Set<Individual> individuals = new HashSet<Individual>();
+		VotingRecordVectorizer vectorizer = new VotingRecordVectorizer();
+		for (VotingRecord item : items) {
+			individuals.add(new Individual(item.getType(), vectorizer.vectorize(item)));
+		}
+		
+		return individuals;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * <p>The features of voting records are the votes, in the order
+	 * of the input file, so they are not named.</p>
+	 */
+	@Override
+	public String[] getVocabulary () {
+		return null;
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -29,6 +29,14 @@ public class Tweet extends TextItem {
 		super(text, type);
 		this.id = id;
 	}
+	
+	/**
+	 * <p>Returns the tweet's id.</p>
+	 * @return the tweet's id.
+	 */
+	public long getId () {
+		return id;
+	}
 
 	/** 
 	 * {@inheritDoc} 
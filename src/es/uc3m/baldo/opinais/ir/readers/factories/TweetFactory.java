@@ -55,4 +55,28 @@ public class TweetFactory implements TextItemFactory<Tweet, String> {
 		// Generates and returns the new tweet.
 		return new Tweet(id, text, type);
 	}
+	
+	/**
+	 * <p>Generates a new tweet whose type is unknown from an input line.</p>
+	 * @param line the input line, which must comply with the next format:
+	 * <i>id</i>\t<i>text</i>. Lines with a type, as read by
+	 * {@link #make(String)}, are also accepted, and their type is ignored.
+	 * @return the generated tweet, whose type is null, or null if the line
+	 * does not comply with the format.
+	 */
+	public Tweet makeUnlabeled (String line) {
+		// Splits the input line with the specified separator.
+		String[] tokens = SEPARATOR.split(line);
+		if (tokens.length < 2) {
+			return null;
+		}
+		
+		// Extracts the tweet id and text, which are the last fields.
+		try {
+			long id = Long.parseLong(tokens[tokens.length - 2]);
+			return new Tweet(id, tokens[tokens.length - 1], null);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
 }
@@ -46,6 +46,19 @@ public class TextVectorizer implements Vectorizer<TextItem> {
 		}
 	}
 	
+	/**
+	 * <p>Builds a new text vectorizer from the words of a trained
+	 * model, in the order of the bits.</p>
+	 * @param vocabulary the array of words which represent
+	 * the individual features.
+	 */
+	public TextVectorizer (String[] vocabulary) {
+		this.features = new HashMap<String, Integer>();
+		for (int i = 0; i < vocabulary.length; i++) {
+			this.features.put(vocabulary[i], i);
+		}
+	}
+	
 	/**
 	 * <p>Vectorizes the text item.</p>
 	 * <p>To do so, an array of bits is built, where a 1 in the